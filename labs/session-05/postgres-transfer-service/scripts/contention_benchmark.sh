@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+# Contention benchmark for the transfer strategies
+# Start the service with the strategy under test, e.g.
+#   java -jar target/postgres-transfer-service-0.0.1-SNAPSHOT.jar --bank.transfer.strategy=conditional-update
+# then run: ./scripts/contention_benchmark.sh [base_url]
+# Transfers go from random accounts to a hot account (HOT_PCT % of them) or to
+# another random account, and the script reports latency percentiles.
+set -euo pipefail
+: "${DB_HOST:=localhost}"
+: "${DB_PORT:=5432}"
+: "${DB_NAME:=bankdb}"
+: "${DB_USER:=postgres}"
+: "${DB_PASSWORD:=postgres}"
+: "${ACCOUNTS:=1000}"
+: "${REQUESTS:=5000}"
+: "${CONCURRENCY:=32}"
+: "${HOT_PCT:=80}"
+BASE_URL=${1:-"http://localhost:8080"}
+export PGPASSWORD="$DB_PASSWORD"
+
+# Seed B-0001..B-n accounts with enough balance to never run dry
+psql -q -h "$DB_HOST" -p "$DB_PORT" -U "$DB_USER" -d "$DB_NAME" -c "
+  INSERT INTO bank.account (id, account_number, balance, opening_balance, version)
+  SELECT nextval('bank.account_seq'), 'B-' || lpad(g::text, 4, '0'), 1000000.00, 1000000.00, 0 FROM generate_series(1, $ACCOUNTS) g
+  ON CONFLICT (account_number) DO NOTHING;"
+
+account() { printf 'B-%04d' "$1"; }
+
+# Build the request list: HOT_PCT % of transfers credit the hot account B-0001
+plan=$(mktemp)
+timings=$(mktemp)
+trap 'rm -f "$plan" "$timings"' EXIT
+for _ in $(seq "$REQUESTS"); do
+  from=$(( RANDOM % (ACCOUNTS - 1) + 2 ))
+  if (( RANDOM % 100 < HOT_PCT )); then
+    to=1
+  else
+    to=$(( RANDOM % ACCOUNTS + 1 ))
+    (( to == from )) && to=1
+  fi
+  echo "from=$(account "$from")&to=$(account "$to")&amount=1.00"
+done > "$plan"
+
+start=$(date +%s.%N)
+xargs -P "$CONCURRENCY" -I{} curl -s -o /dev/null -w '%{time_total}\n' -X POST "$BASE_URL/api/transfer?{}" < "$plan" > "$timings"
+end=$(date +%s.%N)
+
+sort -n "$timings" | awk -v start="$start" -v end="$end" '
+  { t[NR] = $1 }
+  END {
+    elapsed = end - start
+    p = "p50 0.50 p90 0.90 p99 0.99 p999 0.999"; n = split(p, a, " ")
+    printf "requests=%d elapsed=%.2fs throughput=%.1f req/s\n", NR, elapsed, NR / elapsed
+    for (i = 1; i < n; i += 2) {
+      idx = int(NR * a[i + 1]); if (idx < NR * a[i + 1]) idx++; if (idx < 1) idx = 1
+      printf "%s=%.1fms\n", a[i], t[idx] * 1000
+    }
+  }'
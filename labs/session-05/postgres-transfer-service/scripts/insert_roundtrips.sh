@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+# Counts INSERT round-trips per transfer using pg_stat_statements, for single
+# transfers (POST /api/transfer) and batches (POST /api/transfers/batch)
+# Needs shared_preload_libraries = 'pg_stat_statements' on the server.
+# Run it against the service before and after switching from IDENTITY to pooled
+# sequences: ./scripts/insert_roundtrips.sh [base_url]
+set -euo pipefail
+: "${DB_HOST:=localhost}"
+: "${DB_PORT:=5432}"
+: "${DB_NAME:=bankdb}"
+: "${DB_USER:=postgres}"
+: "${DB_PASSWORD:=postgres}"
+: "${SINGLES:=500}"
+: "${BATCHES:=20}"
+: "${BATCH_SIZE:=50}"
+BASE_URL=${1:-"http://localhost:8080"}
+export PGPASSWORD="$DB_PASSWORD"
+PSQL=(psql -q -h "$DB_HOST" -p "$DB_PORT" -U "$DB_USER" -d "$DB_NAME")
+
+curl -s -o /dev/null -X POST "$BASE_URL/api/seed"
+"${PSQL[@]}" -c "CREATE EXTENSION IF NOT EXISTS pg_stat_statements;" > /dev/null
+
+# INSERT and nextval round-trips since the last reset, per transfer
+report() {
+  local label=$1 transfers=$2
+  echo "== $label ($transfers transfers)"
+  "${PSQL[@]}" -c "
+    SELECT left(regexp_replace(query, '\s+', ' ', 'g'), 60) AS statement,
+           sum(calls) AS round_trips,
+           sum(rows) AS rows,
+           round(sum(calls)::numeric / $transfers, 3) AS round_trips_per_transfer
+    FROM pg_stat_statements
+    WHERE query ILIKE 'insert into bank.%' OR query ILIKE '%nextval%'
+    GROUP BY 1 ORDER BY 2 DESC;"
+}
+
+# Single transfers: one transaction each, so their INSERTs cannot be batched with
+# other transfers; a sequence id does not lower this count, only batches do
+"${PSQL[@]}" -c "SELECT pg_stat_statements_reset();" > /dev/null
+for i in $(seq "$SINGLES"); do
+  if (( i % 2 )); then pair="from=A-001&to=A-002"; else pair="from=A-002&to=A-001"; fi
+  curl -s -o /dev/null -X POST "$BASE_URL/api/transfer?$pair&amount=0.01"
+done
+report "POST /api/transfer" "$SINGLES"
+
+# Batches: one transaction per batch, where the INSERTs are batched too
+"${PSQL[@]}" -c "SELECT pg_stat_statements_reset();" > /dev/null
+# Small transfers back and forth so the balances never run out
+item='{"from":"A-001","to":"A-002","amount":0.01},{"from":"A-002","to":"A-001","amount":0.01}'
+body="[$(for _ in $(seq $((BATCH_SIZE / 2))); do printf '%s,' "$item"; done | sed 's/,$//')]"
+for _ in $(seq "$BATCHES"); do
+  curl -s -o /dev/null -X POST "$BASE_URL/api/transfers/batch" -H "Content-Type: application/json" -d "$body"
+done
+report "POST /api/transfers/batch" $(( BATCHES * (BATCH_SIZE / 2) * 2 ))
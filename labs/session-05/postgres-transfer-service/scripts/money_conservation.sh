@@ -0,0 +1,50 @@
+#!/usr/bin/env bash
+# Money conservation check, to run once per transfer mode, e.g.
+#   java -jar target/postgres-transfer-service-0.0.1-SNAPSHOT.jar --bank.transfer.strategy=ledger
+# then run: ./scripts/money_conservation.sh [base_url]
+# Accounts start with a small balance so many transfers are rejected for insufficient
+# funds, and a third of them credit one hot account. Passes when the total money is
+# the same before and after and /api/invariants reports no violation (no negative
+# balance, every ledger transfer nets to zero, snapshots match their entries).
+set -euo pipefail
+: "${DB_HOST:=localhost}"
+: "${DB_PORT:=5432}"
+: "${DB_NAME:=bankdb}"
+: "${DB_USER:=postgres}"
+: "${DB_PASSWORD:=postgres}"
+: "${ACCOUNTS:=200}"
+: "${REQUESTS:=5000}"
+: "${CONCURRENCY:=32}"
+BASE_URL=${1:-"http://localhost:8080"}
+export PGPASSWORD="$DB_PASSWORD"
+
+psql -q -h "$DB_HOST" -p "$DB_PORT" -U "$DB_USER" -d "$DB_NAME" -c "
+  INSERT INTO bank.account (id, account_number, balance, opening_balance, version)
+  SELECT nextval('bank.account_seq'), 'M-' || lpad(g::text, 4, '0'), 100.00, 100.00, 0 FROM generate_series(1, $ACCOUNTS) g
+  ON CONFLICT (account_number) DO NOTHING;"
+
+account() { printf 'M-%04d' "$1"; }
+field() { grep -o "\"$1\":[^,}]*" | cut -d: -f2; }
+
+before=$(curl -s "$BASE_URL/api/invariants")
+plan=$(mktemp)
+trap 'rm -f "$plan"' EXIT
+for _ in $(seq "$REQUESTS"); do
+  from=$(( RANDOM % ACCOUNTS + 1 ))
+  if (( RANDOM % 3 == 0 )); then to=1; else to=$(( RANDOM % ACCOUNTS + 1 )); fi
+  (( to == from )) && to=$(( from % ACCOUNTS + 1 ))
+  echo "from=$(account "$from")&to=$(account "$to")&amount=$(( RANDOM % 40 + 1 )).00"
+done > "$plan"
+xargs -P "$CONCURRENCY" -I{} curl -s -o /dev/null -X POST "$BASE_URL/api/transfer?{}" < "$plan"
+after=$(curl -s "$BASE_URL/api/invariants")
+
+total_before=$(echo "$before" | field totalMoney)
+total_after=$(echo "$after" | field totalMoney)
+echo "before: $before"
+echo "after:  $after"
+if [[ "$total_before" == "$total_after" && "$(echo "$after" | field ok)" == "true" ]]; then
+  echo "PASS: total money conserved ($total_after)"
+else
+  echo "FAIL: total money $total_before -> $total_after"
+  exit 1
+fi
@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+# JDBC (/api/transfer) vs R2DBC (/api/reactive/transfer) on the same instance
+# Both paths share the hardware and get pools of the same size (Hikari's default 10
+# connections, spring.r2dbc.pool.max-size=10). To also cap Tomcat at a small fixed
+# thread count, start the service with e.g. --server.tomcat.threads.max=8
+# then run: ./scripts/reactive_benchmark.sh [base_url]
+# Each path gets the same uniform (low-contention) workload at each concurrency level
+# in LEVELS; the script reports throughput, p50/p99 and errors.
+set -euo pipefail
+: "${DB_HOST:=localhost}"
+: "${DB_PORT:=5432}"
+: "${DB_NAME:=bankdb}"
+: "${DB_USER:=postgres}"
+: "${DB_PASSWORD:=postgres}"
+: "${ACCOUNTS:=10000}"
+: "${REQUESTS:=20000}"
+: "${LEVELS:=50 200 800}"
+BASE_URL=${1:-"http://localhost:8080"}
+export PGPASSWORD="$DB_PASSWORD"
+
+# Seed V-00001..V-n accounts with enough balance to never run dry
+psql -q -h "$DB_HOST" -p "$DB_PORT" -U "$DB_USER" -d "$DB_NAME" -c "
+  INSERT INTO bank.account (id, account_number, balance, opening_balance, version)
+  SELECT nextval('bank.account_seq'), 'V-' || lpad(g::text, 5, '0'), 1000000.00, 1000000.00, 0 FROM generate_series(1, $ACCOUNTS) g
+  ON CONFLICT (account_number) DO NOTHING;"
+
+plan=$(mktemp)
+timings=$(mktemp)
+trap 'rm -f "$plan" "$timings"' EXIT
+for _ in $(seq "$REQUESTS"); do
+  from=$(( (RANDOM * 32768 + RANDOM) % ACCOUNTS + 1 ))
+  to=$(( from % ACCOUNTS + 1 ))
+  printf 'from=V-%05d&to=V-%05d&amount=1.00\n' "$from" "$to"
+done > "$plan"
+
+run() {
+  local mode=$1 path=$2 concurrency=$3 start end
+  start=$(date +%s.%N)
+  xargs -P "$concurrency" -I{} curl -s -o /dev/null -w '%{http_code} %{time_total}\n' -X POST "$BASE_URL$path?{}" < "$plan" > "$timings" || true
+  end=$(date +%s.%N)
+  awk '{ print $2, $1 }' "$timings" | sort -n | awk -v mode="$mode" -v c="$concurrency" -v start="$start" -v end="$end" '
+    { t[NR] = $1; if ($2 != 200) errors++ }
+    END {
+      elapsed = end - start
+      printf "%-8s concurrency=%-5d requests=%d errors=%d throughput=%.1f req/s", mode, c, NR, errors, NR / elapsed
+      p = "p50 0.50 p99 0.99"; n = split(p, a, " ")
+      for (i = 1; i < n; i += 2) {
+        idx = int(NR * a[i + 1]); if (idx < NR * a[i + 1]) idx++; if (idx < 1) idx = 1
+        printf " %s=%.1fms", a[i], t[idx] * 1000
+      }
+      printf "\n"
+    }'
+}
+
+for level in $LEVELS; do
+  run jdbc /api/transfer "$level"
+  run r2dbc /api/reactive/transfer "$level"
+done
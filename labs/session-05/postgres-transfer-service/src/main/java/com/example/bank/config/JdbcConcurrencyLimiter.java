@@ -0,0 +1,148 @@
+package com.example.bank.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Semaphore in front of the connection pool, sized to the pool
+ *
+ * With virtual threads every request gets its own thread, so tens of thousands of
+ * requests can ask the pool for a connection at once. The semaphore makes them wait
+ * in a fair FIFO queue (a parked virtual thread costs a few hundred bytes) and hands
+ * out at most pool-size connections, instead of all of them spinning on the pool and
+ * timing out together. A permit is held from getConnection() to Connection.close().
+ *
+ * Enabled with bank.jdbc.limiter.enabled (on in the virtual-threads profile).
+ */
+@Component
+public class JdbcConcurrencyLimiter implements BeanPostProcessor {
+
+    private final boolean enabled;
+    private final int permits;
+    private final long acquireTimeoutMillis;
+    private final Semaphore semaphore;
+
+    // Metrics
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final AtomicLong waitNanosMax = new AtomicLong();
+    private final LongAdder waitNanosTotal = new LongAdder();
+
+    public JdbcConcurrencyLimiter(@Value("${bank.jdbc.limiter.enabled:false}") boolean enabled,
+                                  @Value("${bank.jdbc.limiter.permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+                                  @Value("${bank.jdbc.limiter.acquire-timeout-ms:${spring.datasource.hikari.connection-timeout:30000}}") long acquireTimeoutMillis) {
+        this.enabled = enabled;
+        this.permits = permits;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.semaphore = new Semaphore(permits, true);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (enabled && bean instanceof DataSource dataSource && !(bean instanceof LimitedDataSource)) {
+            return new LimitedDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    public Map<String, Object> snapshot() {
+        long n = acquired.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        snapshot.put("permits", permits);
+        snapshot.put("inUse", permits - semaphore.availablePermits());
+        snapshot.put("waiting", semaphore.getQueueLength());
+        snapshot.put("acquired", n);
+        snapshot.put("timeouts", timeouts.sum());
+        snapshot.put("avgWaitMs", n == 0 ? 0.0 : waitNanosTotal.sum() / (double) n / 1_000_000);
+        snapshot.put("maxWaitMs", waitNanosMax.get() / 1_000_000.0);
+        return snapshot;
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!semaphore.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException(
+                        "no JDBC permit available after " + acquireTimeoutMillis + "ms (" + permits + " permits)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("interrupted while waiting for a JDBC permit", e);
+        }
+        long waited = System.nanoTime() - start;
+        acquired.increment();
+        waitNanosTotal.add(waited);
+        waitNanosMax.accumulateAndGet(waited, Math::max);
+    }
+
+    /**
+     * Connection whose close() also returns the permit, exactly once
+     */
+    private Connection limited(Connection target) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            semaphore.release();
+                        }
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private final class LimitedDataSource extends DelegatingDataSource {
+
+        LimitedDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            try {
+                return limited(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                semaphore.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            try {
+                return limited(super.getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                semaphore.release();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.bank.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replication lag of the read replica, and the read-only side of the routing DataSource
+ *
+ * Every lag-check-interval-ms the replica reports how far its replay is behind
+ * (0 when it streams from the primary and replayed everything it received, or when it
+ * is not a standby; NULL when its WAL receiver is not streaming). While the lag is at
+ * most max-lag-ms read-only transactions get replica connections; above it, when the
+ * receiver is down, when the check fails, or when the last result is older than two
+ * check intervals (a delayed scheduler), they fall back to the primary until a check
+ * passes again. Reading pg_stat_wal_receiver.status needs pg_read_all_stats (or a
+ * superuser) on the replica. Owns both pools and closes them on shutdown.
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // Replay timestamp alone grows while the primary is idle: caught up means lag 0, but
+    // only while the receiver streams (a disconnected standby has replayed all it got)
+    private static final String LAG_SQL =
+            "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+            "WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN NULL " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE((EXTRACT(EPOCH FROM clock_timestamp() - pg_last_xact_replay_timestamp()) * 1000)::bigint, 0) END";
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final JdbcTemplate replicaJdbc;
+    private final long maxLagMillis;
+    private final long maxResultAgeNanos;
+
+    private volatile boolean replicaUsable;
+    private volatile long lastCheckNanos;
+    private volatile long lagMillis = -1;
+    private volatile OffsetDateTime lastCheck;
+    private volatile String lastError;
+
+    // Metrics
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder failedChecks = new LongAdder();
+
+    ReplicaLagMonitor(HikariDataSource primary, HikariDataSource replica, long maxLagMillis, long checkIntervalMillis) {
+        this.primary = primary;
+        this.replica = replica;
+        this.replicaJdbc = new JdbcTemplate(replica);
+        this.maxLagMillis = maxLagMillis;
+        this.maxResultAgeNanos = TimeUnit.MILLISECONDS.toNanos(2 * checkIntervalMillis);
+    }
+
+    HikariDataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * DataSource of read-only transactions: the replica while it is fresh enough
+     */
+    DataSource readOnlyDataSource() {
+        return new DelegatingDataSource(primary) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (isFresh()) {
+                    replicaReads.increment();
+                    return replica.getConnection();
+                }
+                primaryReads.increment();
+                return primary.getConnection();
+            }
+        };
+    }
+
+    // Usable per the last check, and that check is recent enough to trust
+    private boolean isFresh() {
+        return replicaUsable && System.nanoTime() - lastCheckNanos <= maxResultAgeNanos;
+    }
+
+    @Scheduled(fixedDelayString = "${bank.replica.lag-check-interval-ms:500}")
+    public void checkLag() {
+        boolean usable;
+        try {
+            Long lag = replicaJdbc.queryForObject(LAG_SQL, Long.class);
+            if (lag == null) {
+                lagMillis = -1;
+                lastError = "WAL receiver not streaming";
+                usable = false;
+            } else {
+                lagMillis = lag;
+                lastError = null;
+                usable = lagMillis <= maxLagMillis;
+            }
+        } catch (RuntimeException e) {
+            failedChecks.increment();
+            lastError = e.getMessage();
+            usable = false;
+        }
+        lastCheck = OffsetDateTime.now();
+        lastCheckNanos = System.nanoTime();
+        if (usable != replicaUsable) {
+            if (usable) {
+                logger.info("Replica caught up (lag {} ms): read-only transactions go to the replica", lagMillis);
+            } else {
+                logger.warn("Replica unusable (lag {} ms, error: {}): read-only transactions fall back to the primary",
+                        lagMillis, lastError);
+            }
+            replicaUsable = usable;
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("replicaUsable", isFresh());
+        snapshot.put("lastResultStale", replicaUsable && !isFresh());
+        snapshot.put("lagMs", lagMillis);
+        snapshot.put("maxLagMs", maxLagMillis);
+        snapshot.put("lastCheck", lastCheck);
+        snapshot.put("lastError", lastError);
+        snapshot.put("failedChecks", failedChecks.sum());
+        snapshot.put("readsOnReplica", replicaReads.sum());
+        snapshot.put("readsOnPrimary", primaryReads.sum());
+        snapshot.put("replicaActiveConnections", replica.getHikariPoolMXBean() == null ? 0
+                : replica.getHikariPoolMXBean().getActiveConnections());
+        return snapshot;
+    }
+
+    public void close() {
+        replica.close();
+        primary.close();
+    }
+}
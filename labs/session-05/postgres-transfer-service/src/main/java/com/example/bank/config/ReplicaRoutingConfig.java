@@ -0,0 +1,67 @@
+package com.example.bank.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Read-replica routing (bank.replica.enabled)
+ *
+ * The application DataSource becomes a LazyConnectionDataSourceProxy over the primary
+ * pool: a transaction only gets a physical connection at its first statement, after
+ * Spring marked it read-only or not. @Transactional(readOnly = true) work (balance
+ * lookups, statements, history) is then served by the replica pool, everything else
+ * (transfers, non-transactional calls, schema init) by the primary.
+ * Both pools are built here rather than exposed as beans, so the DataSource wrappers
+ * (JdbcConcurrencyLimiter, SqlStatementBudget) see one DataSource and count once.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bank.replica.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReplicaLagMonitor replicaLagMonitor(DataSourceProperties properties,
+                                               Environment environment,
+                                               @Value("${bank.replica.url}") String url,
+                                               @Value("${bank.replica.username:${spring.datasource.username:}}") String username,
+                                               @Value("${bank.replica.password:${spring.datasource.password:}}") String password,
+                                               @Value("${bank.replica.maximum-pool-size:10}") int maxPoolSize,
+                                               @Value("${bank.replica.max-lag-ms:1000}") long maxLagMillis,
+                                               @Value("${bank.replica.lag-check-interval-ms:500}") long checkIntervalMillis) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        bindHikariSettings(primary, environment);
+        primary.setPoolName("primary");
+
+        HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url).username(username).password(password).build();
+        bindHikariSettings(replica, environment);
+        replica.setPoolName("replica");
+        replica.setMaximumPoolSize(maxPoolSize);
+        replica.setMinimumIdle(0);
+        replica.setReadOnly(true);
+        return new ReplicaLagMonitor(primary, replica, maxLagMillis, checkIntervalMillis);
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaLagMonitor monitor) {
+        LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(monitor.getPrimary());
+        routing.setReadOnlyDataSource(monitor.readOnlyDataSource());
+        return routing;
+    }
+
+    // spring.datasource.hikari.* as for the auto-configured pool
+    private static void bindHikariSettings(HikariDataSource dataSource, Environment environment) {
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.bank.config;
+
+import com.example.bank.service.LatencyHistogram;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SQL statements and database time per HTTP request, per endpoint, with budgets
+ *
+ * Counted at the JDBC level (DataSource wrapper, like JdbcConcurrencyLimiter), so the
+ * SQL of JdbcTemplate (ledger, outbox, audit batches...) is counted as well as
+ * Hibernate's. A statement is one execution: an executeBatch() counts once, since it
+ * is one round trip. Database time adds up the executions, commits and rollbacks.
+ * Only work done on the request thread is attributed: transfers handed to the group
+ * committer or streamed asynchronously are not.
+ *
+ * A request over its endpoint's budget (bank.sql.budget.limits, "path=statements")
+ * logs a warning and counts as overBudget; tests and scripts can reset the metrics,
+ * run a scenario and assert overBudget == 0.
+ */
+@Component
+public class SqlStatementBudget extends OncePerRequestFilter implements BeanPostProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlStatementBudget.class);
+
+    private final boolean enabled;
+    private final Map<String, Integer> limits = new HashMap<>();
+    private final ThreadLocal<Usage> current = new ThreadLocal<>();
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private volatile OffsetDateTime windowStart = OffsetDateTime.now();
+
+    public SqlStatementBudget(@Value("${bank.sql.budget.enabled:true}") boolean enabled,
+                              @Value("${bank.sql.budget.limits:}") List<String> limits) {
+        this.enabled = enabled;
+        for (String limit : limits) {
+            if (limit.isBlank()) {
+                continue;
+            }
+            String[] parts = limit.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("invalid SQL budget: " + limit);
+            }
+            this.limits.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (enabled && bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource)) {
+            return new CountingDataSource(dataSource);
+        }
+        return bean;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Usage usage = new Usage();
+        current.set(usage);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            current.remove();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String path = pattern != null ? pattern.toString() : "unmatched";
+            record(request.getMethod() + " " + path, limits.get(path), usage);
+        }
+    }
+
+    /**
+     * Statements and database time per endpoint since the window started; reset starts a new window
+     */
+    public Map<String, Object> snapshot(boolean reset) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("windowStart", windowStart.toString());
+        Map<String, Object> byEndpoint = new TreeMap<>();
+        for (Map.Entry<String, EndpointStats> e : endpoints.entrySet()) {
+            byEndpoint.put(e.getKey(), e.getValue().snapshot(reset));
+        }
+        result.put("endpoints", byEndpoint);
+        if (reset) {
+            windowStart = OffsetDateTime.now();
+        }
+        return result;
+    }
+
+    private void record(String endpoint, Integer budget, Usage usage) {
+        endpoints.computeIfAbsent(endpoint, k -> new EndpointStats(budget)).record(usage);
+        if (budget != null && usage.statements > budget) {
+            logger.warn("{} ran {} SQL statements (budget {}), {} ms in the database",
+                    endpoint, usage.statements, budget, TimeUnit.NANOSECONDS.toMillis(usage.nanos));
+        }
+    }
+
+    /**
+     * Adds a counted (statement) or timed (commit, rollback) call to the calling
+     * thread's request, if any
+     */
+    private Object invoke(Object target, Method method, Object[] args, boolean counted, boolean timed) throws Throwable {
+        Usage usage = current.get();
+        if (usage == null || !(counted || timed)) {
+            return call(target, method, args);
+        }
+        long start = System.nanoTime();
+        try {
+            return call(target, method, args);
+        } finally {
+            usage.nanos += System.nanoTime() - start;
+            if (counted) {
+                usage.statements++;
+            }
+        }
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Connection counting(Connection target) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("prepare") || name.equals("createStatement")) {
+                        return counting((Statement) call(target, method, args), method.getReturnType());
+                    }
+                    return invoke(target, method, args, false, name.equals("commit") || name.equals("rollback"));
+                });
+    }
+
+    private Statement counting(Statement target, Class<?> type) {
+        InvocationHandler handler = (proxy, method, args) ->
+                invoke(target, method, args, method.getName().startsWith("execute"), false);
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static final class Usage {
+        int statements;
+        long nanos;
+    }
+
+    private static final class EndpointStats {
+        private final Integer budget;
+        private final LatencyHistogram statements = new LatencyHistogram();
+        private final LatencyHistogram dbMicros = new LatencyHistogram();
+        private final AtomicLong overBudget = new AtomicLong();
+
+        EndpointStats(Integer budget) {
+            this.budget = budget;
+        }
+
+        void record(Usage usage) {
+            statements.record(usage.statements);
+            dbMicros.record(TimeUnit.NANOSECONDS.toMicros(usage.nanos));
+            if (budget != null && usage.statements > budget) {
+                overBudget.incrementAndGet();
+            }
+        }
+
+        Map<String, Object> snapshot(boolean reset) {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("budget", budget);
+            snapshot.put("overBudget", reset ? overBudget.getAndSet(0) : overBudget.get());
+            snapshot.put("statements", statements.snapshot(reset, 1.0));
+            snapshot.put("dbTimeMs", dbMicros.snapshot(reset, 1000.0));
+            return snapshot;
+        }
+    }
+
+    private final class CountingDataSource extends DelegatingDataSource {
+
+        CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return counting(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return counting(super.getConnection(username, password));
+        }
+    }
+}
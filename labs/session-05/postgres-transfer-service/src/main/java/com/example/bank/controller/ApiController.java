@@ -1,15 +1,62 @@
 package com.example.bank.controller;
 
+import com.example.bank.config.JdbcConcurrencyLimiter;
+import com.example.bank.config.ReplicaLagMonitor;
+import com.example.bank.config.SqlStatementBudget;
 import com.example.bank.model.Account;
+import com.example.bank.model.Leg;
+import com.example.bank.model.TransferRequest;
 import com.example.bank.model.TransferResult;
+import com.example.bank.model.AuditLog;
+import com.example.bank.model.Transaction;
 import com.example.bank.repository.AccountRepository;
+import com.example.bank.repository.AuditLogRepository;
+import com.example.bank.repository.TransactionRepository;
+import com.example.bank.service.AccountAdmission;
+import com.example.bank.service.AccountIdResolver;
+import com.example.bank.service.AuditLogWriter;
+import com.example.bank.service.BulkLoadService;
+import com.example.bank.service.GroupCommitter;
+import com.example.bank.service.LedgerService;
+import com.example.bank.service.LockTimeoutPolicy;
+import com.example.bank.service.OutboxRelay;
+import com.example.bank.service.PartitionMaintenanceService;
+import com.example.bank.service.ReactiveTransferService;
+import com.example.bank.service.ReconciliationService;
+import com.example.bank.service.RetryEngine;
+import com.example.bank.service.ScheduledTransferService;
+import com.example.bank.service.StatementService;
+import com.example.bank.service.SplitBalanceService;
+import com.example.bank.service.TransferMetrics;
 import com.example.bank.service.TransferService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Mono;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api")
@@ -17,24 +64,118 @@ public class ApiController {
     
     private final TransferService svc;
     private final AccountRepository accounts;
+    private final SplitBalanceService splitBalance;
+    private final AuditLogWriter auditWriter;
+    private final AccountIdResolver idResolver;
+    private final RetryEngine retryEngine;
+    private final TransferMetrics transferMetrics;
+    private final StatementService statements;
+    private final BulkLoadService bulkLoad;
+    private final AuditLogRepository auditLogs;
+    private final PartitionMaintenanceService partitions;
+    private final TransactionRepository transactions;
+    private final AccountAdmission admission;
+    private final JdbcConcurrencyLimiter jdbcLimiter;
+    private final ReactiveTransferService reactiveTransfers;
+    private final OutboxRelay outboxRelay;
+    private final LedgerService ledger;
+    private final ReconciliationService reconciliation;
+    private final ScheduledTransferService scheduledTransfers;
+    private final SqlStatementBudget sqlBudget;
+    private final ObjectProvider<ReplicaLagMonitor> replicaMonitor;
+    private final int maxBatchSize;
+    private final long maxBudgetMs;
     
-    public ApiController(TransferService svc, AccountRepository accounts) {
+    public ApiController(TransferService svc, AccountRepository accounts, SplitBalanceService splitBalance,
+                         AuditLogWriter auditWriter, AccountIdResolver idResolver, RetryEngine retryEngine,
+                         TransferMetrics transferMetrics, StatementService statements, BulkLoadService bulkLoad,
+                         AuditLogRepository auditLogs, PartitionMaintenanceService partitions,
+                         TransactionRepository transactions, AccountAdmission admission,
+                         JdbcConcurrencyLimiter jdbcLimiter, ReactiveTransferService reactiveTransfers,
+                         OutboxRelay outboxRelay, LedgerService ledger, ReconciliationService reconciliation,
+                         ScheduledTransferService scheduledTransfers, SqlStatementBudget sqlBudget,
+                         ObjectProvider<ReplicaLagMonitor> replicaMonitor,
+                         @Value("${bank.transfer.batch.max-size:1000}") int maxBatchSize,
+                         @Value("${bank.transfer.retry.max-budget-ms:60000}") long maxBudgetMs) {
         this.svc = svc;
         this.accounts = accounts;
+        this.splitBalance = splitBalance;
+        this.auditWriter = auditWriter;
+        this.idResolver = idResolver;
+        this.retryEngine = retryEngine;
+        this.transferMetrics = transferMetrics;
+        this.statements = statements;
+        this.bulkLoad = bulkLoad;
+        this.auditLogs = auditLogs;
+        this.partitions = partitions;
+        this.transactions = transactions;
+        this.admission = admission;
+        this.jdbcLimiter = jdbcLimiter;
+        this.reactiveTransfers = reactiveTransfers;
+        this.outboxRelay = outboxRelay;
+        this.ledger = ledger;
+        this.reconciliation = reconciliation;
+        this.scheduledTransfers = scheduledTransfers;
+        this.sqlBudget = sqlBudget;
+        this.replicaMonitor = replicaMonitor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBudgetMs = maxBudgetMs;
     }
     
+    /**
+     * Without a body or generate parameter: creates the two demo accounts A-001 and A-002.
+     * Otherwise bulk loads accounts with COPY from a text/csv or application/x-ndjson body,
+     * or from the generator (generate=count); chunkSize rows are committed at a time and
+     * skip resumes a failed load after its committedRows.
+     */
     @PostMapping("/seed")
-    public ResponseEntity<?> seed() {
+    public ResponseEntity<?> seed(@RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                  @RequestParam(value = "generate", required = false) Long generate,
+                                  @RequestParam(value = "prefix", defaultValue = "G-") String prefix,
+                                  @RequestParam(value = "distribution", defaultValue = "uniform") String distribution,
+                                  @RequestParam(value = "minBalance", defaultValue = "0.00") BigDecimal minBalance,
+                                  @RequestParam(value = "maxBalance", defaultValue = "1000.00") BigDecimal maxBalance,
+                                  @RequestParam(value = "seed", defaultValue = "42") long seed,
+                                  @RequestParam(value = "chunkSize", defaultValue = "100000") int chunkSize,
+                                  @RequestParam(value = "skip", defaultValue = "0") long skip,
+                                  InputStream body) throws IOException {
+        boolean upload = contentType != null && (contentType.contains("csv") || contentType.contains("ndjson"));
+        if (generate != null || upload) {
+            BulkLoadService.RowSource source;
+            if (generate != null) {
+                source = BulkLoadService.generator(generate, prefix, distribution, minBalance, maxBalance, seed);
+            } else {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+                source = contentType.contains("ndjson") ? bulkLoad.ndjson(reader) : BulkLoadService.csv(reader);
+            }
+            try {
+                Map<String, Object> report = bulkLoad.load(source, skip, chunkSize);
+                idResolver.invalidateAll();
+                return ResponseEntity.ok(report);
+            } catch (SQLException e) {
+                idResolver.invalidateAll();
+                Map<String, Object> response = new HashMap<>();
+                response.put("ok", false);
+                response.put("message", e.getMessage());
+                // An invalid row is the client's error, not the server's
+                return e.getCause() instanceof IllegalArgumentException
+                        ? ResponseEntity.badRequest().body(response)
+                        : ResponseEntity.internalServerError().body(response);
+            }
+        }
+        
         if (!accounts.findByAccountNumber("A-001").isPresent()) {
             Account a = new Account("A-001", new BigDecimal("100.00"));
             a.setVersion(0L);
             accounts.save(a);
+            idResolver.invalidate("A-001");
         }
         
         if (!accounts.findByAccountNumber("A-002").isPresent()) {
             Account b = new Account("A-002", new BigDecimal("50.00"));
             b.setVersion(0L);
             accounts.save(b);
+            idResolver.invalidate("A-002");
         }
         
         Map<String, Object> response = new HashMap<>();
@@ -42,16 +183,399 @@ public class ApiController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Total balance: account row, split balance shards and ledger entries
+     */
+    @GetMapping("/accounts/{accountNumber}")
+    public ResponseEntity<?> balance(@PathVariable("accountNumber") String accountNumber) {
+        return ledger.totalBalance(accountNumber)
+                .<ResponseEntity<?>>map(balance -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("accountNumber", accountNumber);
+                    response.put("balance", balance);
+                    return ResponseEntity.ok(response);
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/accounts/{accountNumber}/statement")
+    public ResponseEntity<StreamingResponseBody> statement(
+            @PathVariable("accountNumber") String accountNumber,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
+        if (idResolver.resolve(accountNumber) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        StatementService.Format fmt;
+        try {
+            fmt = StatementService.Format.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> statements.writeStatement(accountNumber, from, to, fmt, out);
+        return ResponseEntity.ok()
+                .contentType(fmt == StatementService.Format.CSV ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"statement-" + accountNumber + "." + fmt.name().toLowerCase() + "\"")
+                .body(body);
+    }
+    
+    /**
+     * One page of the account's transactions, oldest first, with keyset pagination:
+     * nextCursor encodes the (timestamp, id) of the last row and is passed back as after
+     */
+    @GetMapping("/accounts/{accountNumber}/transactions")
+    public ResponseEntity<?> transactions(@PathVariable("accountNumber") String accountNumber,
+                                          @RequestParam(value = "after", required = false) String after,
+                                          @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        if (idResolver.resolve(accountNumber) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        OffsetDateTime afterTs = OffsetDateTime.parse("1970-01-01T00:00:00Z");
+        long afterId = 0;
+        if (after != null && !after.isBlank()) {
+            try {
+                String[] key = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8).split("\\|");
+                afterTs = OffsetDateTime.parse(key[0]);
+                afterId = Long.parseLong(key[1]);
+            } catch (RuntimeException e) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("message", "invalid cursor");
+                return ResponseEntity.badRequest().body(response);
+            }
+        }
+        int pageSize = Math.max(1, Math.min(limit, 500));
+        // One extra row tells whether there is a next page
+        List<Transaction> rows = transactions.findPageAfter(accountNumber, afterTs, afterId, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        List<Map<String, Object>> items = new ArrayList<>(pageSize);
+        for (Transaction t : rows.subList(0, Math.min(rows.size(), pageSize))) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", t.getId());
+            item.put("timestamp", t.getTimestamp());
+            item.put("direction", accountNumber.equals(t.getFromAccount()) ? "DEBIT" : "CREDIT");
+            item.put("from", t.getFromAccount());
+            item.put("to", t.getToAccount());
+            item.put("amount", t.getAmount());
+            item.put("status", t.getStatus());
+            items.add(item);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            Transaction last = rows.get(pageSize - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getTimestamp() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("accountNumber", accountNumber);
+        response.put("items", items);
+        response.put("nextCursor", nextCursor);
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/accounts/{accountNumber}/split")
+    public ResponseEntity<?> splitBalance(@PathVariable("accountNumber") String accountNumber,
+                                          @RequestParam(value = "shards", defaultValue = "8") int shards) {
+        int count = splitBalance.enableSplit(accountNumber, shards);
+        if (count == 0) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("accountNumber", accountNumber);
+        response.put("shards", count);
+        return ResponseEntity.ok(response);
+    }
+    
     @PostMapping("/transfer")
     public ResponseEntity<?> transfer(@RequestParam("from") String from, 
                                    @RequestParam("to") String to, 
-                                   @RequestParam("amount") String strAmount) {
+                                   @RequestParam("amount") String strAmount,
+                                   @RequestParam(value = "budgetMs", required = false) Long budgetMs,
+                                   @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         BigDecimal amount = new BigDecimal(strAmount);
-        TransferResult r = svc.transferWithRetry(from, to, amount, 3);
+        if (budgetMs != null && (budgetMs < 1 || budgetMs > maxBudgetMs)) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("ok", false);
+            response.put("message", "budgetMs must be between 1 and " + maxBudgetMs);
+            return ResponseEntity.badRequest().body(response);
+        }
+        TransferResult r;
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            r = svc.transferIdempotent(idempotencyKey, from, to, amount, 3);
+        } else if (budgetMs != null) {
+            r = svc.transferWithRetry(from, to, amount, Duration.ofMillis(budgetMs));
+        } else {
+            r = svc.transferWithRetry(from, to, amount, 3);
+        }
         Map<String, Object> response = new HashMap<>();
         response.put("status", r.getStatus().name());
         response.put("message", r.getMessage());
         response.put("txId", r.getTxId());
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * Transfer over R2DBC: the request thread is released as soon as the Mono is
+     * returned and the database work runs on the R2DBC event loop
+     */
+    @PostMapping("/reactive/transfer")
+    public Mono<ResponseEntity<?>> reactiveTransfer(@RequestParam("from") String from,
+                                                    @RequestParam("to") String to,
+                                                    @RequestParam("amount") String strAmount) {
+        return reactiveTransfers.transfer(from, to, new BigDecimal(strAmount))
+                .map(r -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("status", r.getStatus().name());
+                    response.put("message", r.getMessage());
+                    response.put("txId", r.getTxId());
+                    return ResponseEntity.ok(response);
+                });
+    }
+    
+    /**
+     * One source, many destinations, all or nothing; the body is the list of legs
+     */
+    @PostMapping("/transfers/split")
+    public ResponseEntity<?> splitTransfer(@RequestParam("from") String from, @RequestBody List<Leg> legs) {
+        List<TransferResult> results = lockTimeoutAll(() -> svc.splitTransfer(from, legs), legs.size());
+        List<Map<String, Object>> items = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("index", i);
+            item.put("to", legs.get(i).getTo());
+            item.put("txId", results.get(i).getTxId());
+            items.add(item);
+        }
+        TransferResult first = results.get(0);
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", first.getStatus().name());
+        response.put("message", first.getMessage());
+        response.put("legs", items);
+        response.put("fromBalance", results.get(results.size() - 1).getFromBalance());
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Future-dated transfer, repeated every `recurrence` (ISO-8601 period, e.g. P1M) when given
+     */
+    @PostMapping("/scheduled-transfers")
+    public ResponseEntity<?> scheduleTransfer(
+            @RequestParam("from") String from,
+            @RequestParam("to") String to,
+            @RequestParam("amount") BigDecimal amount,
+            @RequestParam("dueAt") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime dueAt,
+            @RequestParam(value = "recurrence", required = false) String recurrence) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", scheduledTransfers.schedule(from, to, amount, dueAt, recurrence));
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/scheduled-transfers/{id}")
+    public ResponseEntity<?> scheduledTransfer(@PathVariable("id") long id) {
+        return scheduledTransfers.find(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Cancel a pending scheduled transfer (cancelled=false when it is no longer pending)
+     */
+    @DeleteMapping("/scheduled-transfers/{id}")
+    public ResponseEntity<?> cancelScheduledTransfer(@PathVariable("id") long id) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("cancelled", scheduledTransfers.cancel(id));
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/transfers/batch")
+    public ResponseEntity<?> transferBatch(@RequestBody List<TransferRequest> requests) {
+        // Every account of the batch stays locked until it commits: bound the lock set
+        if (requests.size() > maxBatchSize) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("ok", false);
+            response.put("message", "at most " + maxBatchSize + " transfers per batch");
+            return ResponseEntity.badRequest().body(response);
+        }
+        List<TransferResult> results = lockTimeoutAll(() -> svc.transferBatch(requests), requests.size());
+        List<Map<String, Object>> items = new ArrayList<>(results.size());
+        int committed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            TransferResult r = results.get(i);
+            if (r.getStatus() == TransferResult.Status.OK) {
+                committed++;
+            }
+            Map<String, Object> item = new HashMap<>();
+            item.put("index", i);
+            item.put("status", r.getStatus().name());
+            item.put("message", r.getMessage());
+            item.put("txId", r.getTxId());
+            items.add(item);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("total", results.size());
+        response.put("committed", committed);
+        response.put("rejected", results.size() - committed);
+        response.put("results", items);
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Audit records of [from, to), newest first; the window defaults to the last 24 hours
+     * and is required to be bounded so that only its monthly partitions are read
+     */
+    @GetMapping("/audit")
+    public ResponseEntity<?> auditHistory(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        OffsetDateTime end = to != null ? to : OffsetDateTime.now();
+        OffsetDateTime start = from != null ? from : end.minusHours(24);
+        List<AuditLog> records = auditLogs.findBetween(start, end, PageRequest.of(0, Math.max(1, Math.min(limit, 1000))));
+        Map<String, Object> response = new HashMap<>();
+        response.put("from", start);
+        response.put("to", end);
+        response.put("records", records);
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/partitions")
+    public ResponseEntity<?> partitions() {
+        return ResponseEntity.ok(partitions.describe());
+    }
+    
+    @GetMapping("/metrics/group-commit")
+    public ResponseEntity<?> groupCommitMetrics() {
+        GroupCommitter gc = svc.getGroupCommitter();
+        Map<String, Object> response = new HashMap<>();
+        response.put("enabled", gc != null);
+        if (gc != null) {
+            long batches = gc.getBatchCount();
+            response.put("queueDepth", gc.getQueueDepth());
+            response.put("batches", batches);
+            response.put("transfers", gc.getTransferCount());
+            response.put("avgBatchSize", batches == 0 ? 0.0 : (double) gc.getTransferCount() / batches);
+        }
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/metrics/audit")
+    public ResponseEntity<?> auditMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("mode", auditWriter.getMode().name());
+        response.put("bufferSize", auditWriter.getBufferSize());
+        response.put("bufferCapacity", auditWriter.getBufferCapacity());
+        response.put("flushes", auditWriter.getFlushCount());
+        response.put("flushedRecords", auditWriter.getFlushedRecords());
+        response.put("avgFlushMs", auditWriter.getAvgFlushMillis());
+        response.put("maxFlushMs", auditWriter.getMaxFlushMillis());
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/metrics/retries")
+    public ResponseEntity<?> retryMetrics(@RequestParam(value = "top", defaultValue = "10") int top) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("retriesByReason", retryEngine.getRetryCounts());
+        response.put("mostConflictedAccounts", retryEngine.getMostConflictedAccounts(top));
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/metrics/admission")
+    public ResponseEntity<?> admissionMetrics() {
+        return ResponseEntity.ok(admission.snapshot());
+    }
+    
+    @GetMapping("/metrics/jdbc")
+    public ResponseEntity<?> jdbcMetrics() {
+        Map<String, Object> response = new HashMap<>(jdbcLimiter.snapshot());
+        response.put("virtualThread", isVirtual(Thread.currentThread()));
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/metrics/sql")
+    public ResponseEntity<?> sqlMetrics(@RequestParam(value = "reset", defaultValue = "false") boolean reset) {
+        return ResponseEntity.ok(sqlBudget.snapshot(reset));
+    }
+    
+    /**
+     * Replica lag and read routing (enabled=false without bank.replica.enabled)
+     */
+    @GetMapping("/metrics/replica")
+    public ResponseEntity<?> replicaMetrics() {
+        ReplicaLagMonitor monitor = replicaMonitor.getIfAvailable();
+        Map<String, Object> response = new HashMap<>();
+        response.put("enabled", monitor != null);
+        if (monitor != null) {
+            response.putAll(monitor.snapshot());
+        }
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/metrics/outbox")
+    public ResponseEntity<?> outboxMetrics() {
+        return ResponseEntity.ok(outboxRelay.snapshot());
+    }
+    
+    @GetMapping("/metrics/scheduler")
+    public ResponseEntity<?> schedulerMetrics() {
+        return ResponseEntity.ok(scheduledTransfers.snapshot());
+    }
+    
+    @GetMapping("/metrics/ledger")
+    public ResponseEntity<?> ledgerMetrics() {
+        return ResponseEntity.ok(ledger.snapshot());
+    }
+    
+    /**
+     * Money conservation check, the same in every transfer mode (see "ok")
+     */
+    @GetMapping("/invariants")
+    public ResponseEntity<?> invariants() {
+        return ResponseEntity.ok(ledger.checkInvariants());
+    }
+    
+    /**
+     * Start a reconciliation run in the background (started=false when one is running)
+     */
+    @PostMapping("/reconciliation")
+    public ResponseEntity<?> startReconciliation() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("started", reconciliation.start());
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/reconciliation")
+    public ResponseEntity<?> reconciliationStatus() {
+        return ResponseEntity.ok(reconciliation.status());
+    }
+    
+    @GetMapping("/metrics/transfers")
+    public ResponseEntity<?> transferMetrics(@RequestParam(value = "reset", defaultValue = "false") boolean reset) {
+        return ResponseEntity.ok(transferMetrics.snapshot(reset));
+    }
+    
+    /**
+     * Results of an all-in-one-transaction call, or LOCK_TIMEOUT for every item when the
+     * transaction gave up waiting for its account locks
+     */
+    private static List<TransferResult> lockTimeoutAll(Supplier<List<TransferResult>> call, int size) {
+        try {
+            return call.get();
+        } catch (DataAccessException e) {
+            if (!LockTimeoutPolicy.isLockTimeout(e)) {
+                throw e;
+            }
+            return Collections.nCopies(size,
+                    TransferResult.fail(TransferResult.Status.LOCK_TIMEOUT, "timed out waiting for account locks"));
+        }
+    }
+    
+    // Thread.isVirtual() only exists on Java 21; the default build targets 17
+    private static boolean isVirtual(Thread thread) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
 }
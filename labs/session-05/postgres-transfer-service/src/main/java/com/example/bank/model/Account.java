@@ -8,7 +8,8 @@ import java.math.BigDecimal;
 public class Account {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_seq")
+    @SequenceGenerator(name = "account_seq", sequenceName = "account_seq", schema = "bank", allocationSize = 50)
     private Long id;
     
     @Column(name = "account_number", nullable = false)
@@ -17,6 +18,10 @@ public class Account {
     @Column(name = "balance", nullable = false, precision = 19, scale = 2)
     private BigDecimal balance;
     
+    // Balance the account was created with; reconciliation replays bank.tx from it
+    @Column(name = "opening_balance", updatable = false, precision = 19, scale = 2)
+    private BigDecimal openingBalance;
+    
     @Version
     @Column(name = "version", nullable = false)
     private Long version;
@@ -27,6 +32,7 @@ public class Account {
     public Account(String accountNumber, BigDecimal balance) {
         this.accountNumber = accountNumber;
         this.balance = balance;
+        this.openingBalance = balance;
         this.version = 0L;
     }
     
@@ -55,6 +61,10 @@ public class Account {
         this.balance = balance;
     }
     
+    public BigDecimal getOpeningBalance() {
+        return openingBalance;
+    }
+    
     public Long getVersion() {
         return version;
     }
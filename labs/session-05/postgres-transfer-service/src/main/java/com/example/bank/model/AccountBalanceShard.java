@@ -0,0 +1,70 @@
+package com.example.bank.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+
+/**
+ * Sub-row of a "split balance" (hot) account
+ * The real balance of a split account is account.balance plus the sum of its shards.
+ * Credits add to one random shard, so concurrent credits don't queue on the account row.
+ */
+@Entity
+@Table(name = "account_balance_shard", schema = "bank", uniqueConstraints = @UniqueConstraint(name = "uq_account_shard", columnNames = {"account_id", "shard"}))
+public class AccountBalanceShard {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_balance_shard_seq")
+    @SequenceGenerator(name = "account_balance_shard_seq", sequenceName = "account_balance_shard_seq", schema = "bank", allocationSize = 50)
+    private Long id;
+    
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+    
+    @Column(name = "shard", nullable = false)
+    private Integer shard;
+    
+    @Column(name = "balance", nullable = false, precision = 19, scale = 2)
+    private BigDecimal balance;
+    
+    // Constructors
+    public AccountBalanceShard() {}
+    
+    public AccountBalanceShard(Long accountId, Integer shard, BigDecimal balance) {
+        this.accountId = accountId;
+        this.shard = shard;
+        this.balance = balance;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public Long getAccountId() {
+        return accountId;
+    }
+    
+    public void setAccountId(Long accountId) {
+        this.accountId = accountId;
+    }
+    
+    public Integer getShard() {
+        return shard;
+    }
+    
+    public void setShard(Integer shard) {
+        this.shard = shard;
+    }
+    
+    public BigDecimal getBalance() {
+        return balance;
+    }
+    
+    public void setBalance(BigDecimal balance) {
+        this.balance = balance;
+    }
+}
@@ -8,7 +8,8 @@ import java.time.OffsetDateTime;
 public class AuditLog {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_log_seq")
+    @SequenceGenerator(name = "audit_log_seq", sequenceName = "audit_log_seq", schema = "bank", allocationSize = 50)
     private Long id;
     
     @Column(name = "action", nullable = false)
@@ -0,0 +1,113 @@
+package com.example.bank.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Result of a transfer stored under its Idempotency-Key
+ * Written in the same transaction as the transfer, so a key exists if and only if
+ * its transfer committed
+ */
+@Entity
+@Table(name = "idempotency_key", schema = "bank")
+public class IdempotencyRecord {
+    
+    @Id
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+    
+    // from|to|amount of the original request, to detect a key reused for another transfer
+    @Column(name = "request_hash", nullable = false)
+    private String requestHash;
+    
+    @Column(name = "status", nullable = false)
+    private String status;
+    
+    @Column(name = "message")
+    private String message;
+    
+    @Column(name = "tx_id")
+    private Long txId;
+    
+    @Column(name = "from_balance", precision = 19, scale = 2)
+    private BigDecimal fromBalance;
+    
+    @Column(name = "to_balance", precision = 19, scale = 2)
+    private BigDecimal toBalance;
+    
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt = OffsetDateTime.now();
+    
+    // Constructors
+    public IdempotencyRecord() {}
+    
+    // Getters and Setters
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+    
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+    
+    public String getRequestHash() {
+        return requestHash;
+    }
+    
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+    
+    public Long getTxId() {
+        return txId;
+    }
+    
+    public void setTxId(Long txId) {
+        this.txId = txId;
+    }
+    
+    public BigDecimal getFromBalance() {
+        return fromBalance;
+    }
+    
+    public void setFromBalance(BigDecimal fromBalance) {
+        this.fromBalance = fromBalance;
+    }
+    
+    public BigDecimal getToBalance() {
+        return toBalance;
+    }
+    
+    public void setToBalance(BigDecimal toBalance) {
+        this.toBalance = toBalance;
+    }
+    
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(OffsetDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public TransferResult toResult() {
+        return new TransferResult(TransferResult.Status.valueOf(status), message, txId, fromBalance, toBalance);
+    }
+}
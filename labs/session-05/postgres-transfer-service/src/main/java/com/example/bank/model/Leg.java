@@ -0,0 +1,37 @@
+package com.example.bank.model;
+
+import java.math.BigDecimal;
+
+/**
+ * One destination of a multi-leg transfer (TransferService.splitTransfer)
+ */
+public class Leg {
+
+    private String to;
+    private BigDecimal amount;
+
+    // Constructors
+    public Leg() {}
+
+    public Leg(String to, BigDecimal amount) {
+        this.to = to;
+        this.amount = amount;
+    }
+
+    // Getters and Setters
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+}
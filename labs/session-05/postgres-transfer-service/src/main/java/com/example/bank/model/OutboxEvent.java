@@ -0,0 +1,45 @@
+package com.example.bank.model;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Row of bank.outbox: an event written in the same transaction as the change it
+ * describes and published afterwards by the outbox relay
+ */
+public class OutboxEvent {
+    
+    private final Long id;
+    private final String eventType;
+    private final Long aggregateId;
+    private final String payload;
+    private final OffsetDateTime createdAt;
+    
+    public OutboxEvent(Long id, String eventType, Long aggregateId, String payload, OffsetDateTime createdAt) {
+        this.id = id;
+        this.eventType = eventType;
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+    
+    // Getters
+    public Long getId() {
+        return id;
+    }
+    
+    public String getEventType() {
+        return eventType;
+    }
+    
+    public Long getAggregateId() {
+        return aggregateId;
+    }
+    
+    public String getPayload() {
+        return payload;
+    }
+    
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
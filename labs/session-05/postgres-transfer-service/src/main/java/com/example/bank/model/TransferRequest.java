@@ -0,0 +1,44 @@
+package com.example.bank.model;
+
+import java.math.BigDecimal;
+
+public class TransferRequest {
+
+    private String from;
+    private String to;
+    private BigDecimal amount;
+
+    // Constructors
+    public TransferRequest() {}
+
+    public TransferRequest(String from, String to, BigDecimal amount) {
+        this.from = from;
+        this.to = to;
+        this.amount = amount;
+    }
+
+    // Getters and Setters
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public void setTo(String to) {
+        this.to = to;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+}
@@ -5,7 +5,7 @@ import java.math.BigDecimal;
 public class TransferResult {
     
     public enum Status {
-        OK, INSUFFICIENT_FUNDS, CONFLICT_RETRY, ERROR
+        OK, INSUFFICIENT_FUNDS, CONFLICT_RETRY, BUSY, LOCK_TIMEOUT, ERROR
     }
     
     private final Status status;
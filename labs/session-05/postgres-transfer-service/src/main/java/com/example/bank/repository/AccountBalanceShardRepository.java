@@ -0,0 +1,48 @@
+package com.example.bank.repository;
+
+import com.example.bank.model.AccountBalanceShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AccountBalanceShardRepository extends JpaRepository<AccountBalanceShard, Long> {
+    
+    /**
+     * Lock every shard of an account, always in shard order
+     * Debits and compaction lock the account row first and then the shards in this
+     * order; shards of different accounts are locked in account ID order
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from AccountBalanceShard s where s.accountId = :accountId order by s.shard asc")
+    List<AccountBalanceShard> lockByAccountId(@Param("accountId") Long accountId);
+    
+    /**
+     * Lock one shard of an account (the one a credit goes to)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from AccountBalanceShard s where s.accountId = :accountId and s.shard = :shard")
+    Optional<AccountBalanceShard> lockShard(@Param("accountId") Long accountId, @Param("shard") int shard);
+    
+    /**
+     * Create missing shards 0..shards-1 with a zero balance
+     */
+    @Modifying
+    @Query(value = "INSERT INTO bank.account_balance_shard (account_id, shard, balance) " +
+                   "SELECT :accountId, g, 0 FROM generate_series(0, :shards - 1) g " +
+                   "ON CONFLICT (account_id, shard) DO NOTHING", nativeQuery = true)
+    int createShards(@Param("accountId") Long accountId, @Param("shards") int shards);
+    
+    /**
+     * Accounts in split mode with their shard count, as [accountId, shardCount] rows
+     */
+    @Query("select s.accountId, count(s) from AccountBalanceShard s group by s.accountId")
+    List<Object[]> countShardsByAccount();
+}
@@ -8,6 +8,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.LockModeType;
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +22,14 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
      */
     Optional<Account> findByAccountNumber(String accountNumber);
     
+    /**
+     * Resolve many account numbers to IDs in a single query
+     * Returns a projection (not entities) so the rows are not loaded into the
+     * persistence context before lockByIds reads them under the row lock
+     */
+    @Query("select a.id as id, a.accountNumber as accountNumber from Account a where a.accountNumber in :numbers")
+    List<AccountIdView> findIdsByAccountNumbers(@Param("numbers") Collection<String> numbers);
+    
     /**
      * CRITICAL: Pessimistic locking to prevent race conditions during transfers
      * 
@@ -45,4 +55,39 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select a from Account a where a.id in :ids order by a.id asc")
     List<Account> lockByIds(@Param("ids") List<Long> ids);
+    
+    /**
+     * Conditional debit in a single statement: the balance check is part of the UPDATE,
+     * so there is no read-then-write window. debited is the new balance, null when the
+     * row was not debited; found tells insufficient funds from a missing account in the
+     * same round trip. The version is bumped to stay compatible with @Version readers.
+     */
+    @Query(value = "WITH d AS (UPDATE bank.account SET balance = balance - :amt, version = version + 1 " +
+                   "WHERE id = :id AND balance >= :amt RETURNING balance) " +
+                   "SELECT (SELECT balance FROM d) AS debited, " +
+                   "EXISTS (SELECT 1 FROM bank.account WHERE id = :id) AS found", nativeQuery = true)
+    DebitView debitIfSufficient(@Param("id") Long id, @Param("amt") BigDecimal amount);
+    
+    /**
+     * Unconditional credit in a single statement, returns the new balance
+     */
+    @Query(value = "UPDATE bank.account SET balance = balance + :amt, version = version + 1 " +
+                   "WHERE id = :id RETURNING balance", nativeQuery = true)
+    Optional<BigDecimal> credit(@Param("id") Long id, @Param("amt") BigDecimal amount);
+    
+    /**
+     * Outcome of debitIfSufficient
+     */
+    interface DebitView {
+        BigDecimal getDebited();
+        Boolean getFound();
+    }
+    
+    /**
+     * Lightweight projection for account number to ID resolution
+     */
+    interface AccountIdView {
+        Long getId();
+        String getAccountNumber();
+    }
 }
@@ -1,9 +1,22 @@
 package com.example.bank.repository;
 
 import com.example.bank.model.AuditLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
 
 @Repository
 public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
+    
+    // Bounded on timestamp, the partition key, so only the partitions of [from, to) are
+    // scanned; read-only, so served by the replica when read-replica routing is enabled
+    @Transactional(readOnly = true)
+    @Query("select a from AuditLog a where a.timestamp >= :from and a.timestamp < :to order by a.timestamp desc, a.id desc")
+    List<AuditLog> findBetween(@Param("from") OffsetDateTime from, @Param("to") OffsetDateTime to, Pageable page);
 }
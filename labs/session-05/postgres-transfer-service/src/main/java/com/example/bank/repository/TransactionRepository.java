@@ -2,8 +2,37 @@ package com.example.bank.repository;
 
 import com.example.bank.model.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+    
+    /**
+     * Keyset page of the transactions of an account strictly after (timestamp, id),
+     * oldest first. Each branch is a range scan of ix_tx_from_account / ix_tx_to_account
+     * that stops after :limit rows, so a page costs O(limit) however deep it is; the
+     * redundant timestamp >= :afterTs lets the planner prune the older partitions.
+     * A self-transfer is only returned by the first branch.
+     * Read-only: served by the replica when read-replica routing is enabled.
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT * FROM (" +
+            "(SELECT * FROM bank.tx WHERE from_account = :account " +
+            "AND timestamp >= :afterTs AND (timestamp, id) > (:afterTs, :afterId) " +
+            "ORDER BY timestamp, id LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT * FROM bank.tx WHERE to_account = :account AND from_account <> :account " +
+            "AND timestamp >= :afterTs AND (timestamp, id) > (:afterTs, :afterId) " +
+            "ORDER BY timestamp, id LIMIT :limit)" +
+            ") t ORDER BY timestamp, id LIMIT :limit", nativeQuery = true)
+    List<Transaction> findPageAfter(@Param("account") String account,
+                                    @Param("afterTs") OffsetDateTime afterTs,
+                                    @Param("afterId") long afterId,
+                                    @Param("limit") int limit);
 }
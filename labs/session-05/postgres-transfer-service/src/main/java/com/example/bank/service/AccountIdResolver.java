@@ -0,0 +1,87 @@
+package com.example.bank.service;
+
+import com.example.bank.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of account number -> account ID
+ * The mapping never changes for a live account, so transfers can skip the lookup
+ * queries and go straight to lockByIds. Only found accounts are cached; entries are
+ * dropped when an account is created or closed, or when a cached ID no longer
+ * matches a row. The size bound is approximate: arbitrary entries are evicted once
+ * it is exceeded.
+ */
+@Component
+public class AccountIdResolver {
+    
+    private final AccountRepository accountRepo;
+    private final int maxEntries;
+    private final ConcurrentMap<String, Long> ids = new ConcurrentHashMap<>();
+    
+    public AccountIdResolver(AccountRepository accountRepo,
+                             @Value("${bank.account-id-cache.max-entries:500000}") int maxEntries) {
+        this.accountRepo = accountRepo;
+        this.maxEntries = maxEntries;
+    }
+    
+    /**
+     * ID of the account, or null when it doesn't exist
+     */
+    public Long resolve(String accountNumber) {
+        return resolveAll(List.of(accountNumber)).get(accountNumber);
+    }
+    
+    /**
+     * IDs of the given accounts; missing ones are loaded with a single query
+     * Accounts that don't exist are absent from the returned map
+     */
+    public Map<String, Long> resolveAll(Collection<String> accountNumbers) {
+        Map<String, Long> result = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String number : accountNumbers) {
+            Long id = ids.get(number);
+            if (id != null) {
+                result.put(number, id);
+            } else if (!result.containsKey(number)) {
+                misses.add(number);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (AccountRepository.AccountIdView v : accountRepo.findIdsByAccountNumbers(misses)) {
+                result.put(v.getAccountNumber(), v.getId());
+                ids.put(v.getAccountNumber(), v.getId());
+            }
+            evictIfNeeded();
+        }
+        return result;
+    }
+    
+    public void invalidate(String accountNumber) {
+        ids.remove(accountNumber);
+    }
+    
+    public void invalidateAll() {
+        ids.clear();
+    }
+    
+    public int size() {
+        return ids.size();
+    }
+    
+    private void evictIfNeeded() {
+        int excess = ids.size() - maxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        Iterator<String> it = ids.keySet().iterator();
+        while (excess-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.bank.service;
+
+import com.example.bank.model.AuditLog;
+import com.example.bank.repository.AuditLogRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes audit log records in multi-row batches instead of one INSERT per record
+ *
+ * Modes (bank.audit.mode):
+ * - direct: AuditLogRepository.save per record (one round-trip each)
+ * - in-transaction: records are collected per transaction and inserted with one JDBC
+ *   batch just before commit; same durability as direct
+ * - async: records are handed to a bounded ring buffer after commit and flushed by a
+ *   background thread when batch-size records are waiting or every flush-interval-ms.
+ *   Records still in the buffer are lost if the process crashes (bounded-loss window);
+ *   when the buffer is full the caller writes the record itself (backpressure)
+ *
+ * With reWriteBatchedInserts=true, pgjdbc turns each JDBC batch into multi-row INSERTs.
+ */
+@Component
+public class AuditLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    // The id comes straight from the pooled sequence: each nextval skips a whole block of
+    // 50, which only leaves gaps and never collides with the blocks Hibernate reserves
+    private static final String INSERT_SQL =
+            "INSERT INTO bank.audit_log (id, action, details, timestamp) VALUES (nextval('bank.audit_log_seq'), ?, ?, ?)";
+
+    public enum Mode { DIRECT, IN_TRANSACTION, ASYNC }
+
+    private final JdbcTemplate jdbc;
+    private final AuditLogRepository auditRepo;
+    private final Mode mode;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<AuditLog> buffer;
+    private final int capacity;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    // Metrics
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedRecords = new AtomicLong();
+    private final AtomicLong flushNanosTotal = new AtomicLong();
+    private final AtomicLong flushNanosMax = new AtomicLong();
+
+    public AuditLogWriter(JdbcTemplate jdbc,
+                          AuditLogRepository auditRepo,
+                          @Value("${bank.audit.mode:in-transaction}") String mode,
+                          @Value("${bank.audit.buffer-capacity:8192}") int capacity,
+                          @Value("${bank.audit.batch-size:200}") int batchSize,
+                          @Value("${bank.audit.flush-interval-ms:50}") long flushIntervalMs) {
+        this.jdbc = jdbc;
+        this.auditRepo = auditRepo;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase().replace('-', '_'));
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        if (this.mode == Mode.ASYNC) {
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+            this.flusher = new Thread(this::runFlusher, "audit-log-flusher");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.buffer = null;
+            this.flusher = null;
+        }
+    }
+
+    public void write(AuditLog record) {
+        writeAll(List.of(record));
+    }
+
+    public void writeAll(Collection<AuditLog> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (mode == Mode.DIRECT) {
+            auditRepo.saveAll(records);
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // No surrounding transaction: nothing to wait for
+            if (mode == Mode.ASYNC) {
+                enqueue(records);
+            } else {
+                insertBatch(new ArrayList<>(records));
+            }
+            return;
+        }
+        pendingForCurrentTransaction().addAll(records);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getBufferSize() {
+        return buffer == null ? 0 : buffer.size();
+    }
+
+    public int getBufferCapacity() {
+        return buffer == null ? 0 : capacity;
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    public long getFlushedRecords() {
+        return flushedRecords.get();
+    }
+
+    public double getAvgFlushMillis() {
+        long n = flushes.get();
+        return n == 0 ? 0.0 : flushNanosTotal.get() / (double) n / 1_000_000;
+    }
+
+    public double getMaxFlushMillis() {
+        return flushNanosMax.get() / 1_000_000.0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records of the current transaction; the first call registers the synchronization
+     * that inserts them before commit (in-transaction) or enqueues them after commit (async)
+     */
+    @SuppressWarnings("unchecked")
+    private List<AuditLog> pendingForCurrentTransaction() {
+        List<AuditLog> pending = (List<AuditLog>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        List<AuditLog> records = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, records);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (mode == Mode.IN_TRANSACTION) {
+                    insertBatch(records);
+                }
+            }
+
+            @Override
+            public void afterCommit() {
+                if (mode == Mode.ASYNC) {
+                    enqueue(records);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(AuditLogWriter.this);
+            }
+        });
+        return records;
+    }
+
+    private void enqueue(Collection<AuditLog> records) {
+        for (AuditLog r : records) {
+            if (!buffer.offer(r)) {
+                // Buffer full: write on the caller thread instead of dropping the record
+                insertBatch(List.of(r));
+            }
+        }
+    }
+
+    private void insertBatch(List<AuditLog> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        jdbc.batchUpdate(INSERT_SQL, records, batchSize, (ps, r) -> {
+            ps.setString(1, r.getAction());
+            ps.setString(2, r.getDetails());
+            ps.setObject(3, r.getTimestamp(), Types.TIMESTAMP_WITH_TIMEZONE);
+        });
+        long elapsed = System.nanoTime() - start;
+        flushes.incrementAndGet();
+        flushedRecords.addAndGet(records.size());
+        flushNanosTotal.addAndGet(elapsed);
+        flushNanosMax.accumulateAndGet(elapsed, Math::max);
+    }
+
+    private void runFlusher() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            // Size trigger: flush as soon as batchSize records are waiting
+            // Time trigger: otherwise flush whatever arrived within the interval
+            long deadline = System.nanoTime() + flushIntervalNanos;
+            try {
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    AuditLog r = remaining > 0 && running ? buffer.poll(remaining, TimeUnit.NANOSECONDS) : buffer.poll();
+                    if (r == null) {
+                        break;
+                    }
+                    batch.add(r);
+                    buffer.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Interrupted by shutdown: flush what is left before exiting
+                Thread.interrupted();
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    insertBatch(batch);
+                } catch (RuntimeException e) {
+                    logger.error("Lost {} audit log records: {}", batch.size(), e.getMessage());
+                }
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.bank.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Bulk account loader based on COPY FROM STDIN (pgjdbc CopyManager)
+ *
+ * Rows are streamed from the source into a temporary staging table with COPY and moved
+ * into bank.account with one INSERT ... SELECT per chunk. Each chunk commits on its own
+ * and duplicate account numbers are skipped (ON CONFLICT DO NOTHING), so a failed load
+ * can be resumed by skipping the rows reported as committed.
+ */
+@Service
+public class BulkLoadService {
+
+    private static final String STAGING_DDL =
+            "CREATE TEMP TABLE IF NOT EXISTS account_load (account_number TEXT, balance NUMERIC(19, 2)) " +
+            "ON COMMIT DELETE ROWS";
+    private static final String COPY_SQL = "COPY account_load (account_number, balance) FROM STDIN WITH (FORMAT csv)";
+    // Ids like Hibernate's pooled optimizer (allocationSize 50): a sequence value v covers
+    // v-49..v, so a chunk takes one nextval per 50 rows instead of one per row, and
+    // row r of the chunk gets id v[r / 50] - 49 + r % 50. One spare value is drawn
+    // because the first value of a new sequence (1) would cover ids down to -48.
+    private static final int ID_BLOCK = 50;
+    private static final String MOVE_SQL =
+            "WITH blocks AS (SELECT row_number() OVER () - 1 AS block, v FROM " +
+            "(SELECT nextval('bank.account_seq') AS v FROM generate_series(1, ?)) s WHERE v >= " + ID_BLOCK + "), " +
+            "numbered AS (SELECT account_number, balance, row_number() OVER () - 1 AS r FROM account_load) " +
+            "INSERT INTO bank.account (id, account_number, balance, opening_balance, version) " +
+            "SELECT b.v - " + (ID_BLOCK - 1) + " + n.r % " + ID_BLOCK + ", n.account_number, n.balance, n.balance, 0 " +
+            "FROM numbered n JOIN blocks b ON b.block = n.r / " + ID_BLOCK + " " +
+            "ON CONFLICT (account_number) DO NOTHING";
+
+    private final DataSource dataSource;
+    private final ObjectMapper mapper;
+
+    public BulkLoadService(DataSource dataSource, ObjectMapper mapper) {
+        this.dataSource = dataSource;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Source of accounts, one "account_number,balance" CSV line per call, null at the end
+     */
+    public interface RowSource {
+        String nextCsvLine() throws IOException;
+    }
+
+    /**
+     * CSV upload with account_number,balance columns; a header line is skipped
+     * A line that is not a non-blank account number and a NUMERIC(19, 2) balance fails
+     * the load with an IllegalArgumentException naming the line, like ndjson
+     */
+    public static RowSource csv(BufferedReader reader) {
+        return new RowSource() {
+            private boolean first = true;
+            private long lineNumber;
+
+            @Override
+            public String nextCsvLine() throws IOException {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    if (first) {
+                        first = false;
+                        if (line.toLowerCase().startsWith("account_number")) {
+                            continue;
+                        }
+                    }
+                    checkCsvLine(line, lineNumber);
+                    return line;
+                }
+                return null;
+            }
+        };
+    }
+
+    private static void checkCsvLine(String line, long lineNumber) {
+        // account_number, optionally quoted ("" inside quotes), then the balance
+        int comma;
+        String number;
+        if (line.startsWith("\"")) {
+            int i = 1;
+            StringBuilder unquoted = new StringBuilder();
+            while (true) {
+                int quote = line.indexOf('"', i);
+                if (quote < 0) {
+                    throw new IllegalArgumentException("line " + lineNumber + ": unterminated quoted accountNumber");
+                }
+                unquoted.append(line, i, quote);
+                if (quote + 1 < line.length() && line.charAt(quote + 1) == '"') {
+                    unquoted.append('"');
+                    i = quote + 2;
+                    continue;
+                }
+                comma = quote + 1;
+                break;
+            }
+            number = unquoted.toString();
+            if (comma >= line.length() || line.charAt(comma) != ',') {
+                throw new IllegalArgumentException("line " + lineNumber + ": expected account_number,balance");
+            }
+        } else {
+            comma = line.indexOf(',');
+            if (comma < 0) {
+                throw new IllegalArgumentException("line " + lineNumber + ": expected account_number,balance");
+            }
+            number = line.substring(0, comma);
+            if (number.indexOf('"') >= 0) {
+                throw new IllegalArgumentException("line " + lineNumber + ": an accountNumber with quotes must be quoted");
+            }
+        }
+        if (number.isBlank()) {
+            throw new IllegalArgumentException("line " + lineNumber + ": accountNumber is missing");
+        }
+        BigDecimal balance;
+        try {
+            balance = new BigDecimal(line.substring(comma + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("line " + lineNumber + ": balance is missing or not a number");
+        }
+        checkBalance(balance, lineNumber);
+    }
+
+    // Must fit the NUMERIC(19, 2) staging column, or COPY fails the whole chunk
+    private static void checkBalance(BigDecimal balance, long lineNumber) {
+        if (balance.setScale(2, RoundingMode.HALF_UP).precision() > 19) {
+            throw new IllegalArgumentException("line " + lineNumber + ": balance is out of range");
+        }
+    }
+
+    /**
+     * NDJSON upload, one {"accountNumber": "...", "balance": ...} object per line
+     * A line without a non-blank accountNumber string or a numeric balance fails the
+     * load with an IllegalArgumentException naming the line
+     */
+    public RowSource ndjson(BufferedReader reader) {
+        return new RowSource() {
+            private long lineNumber;
+
+            @Override
+            public String nextCsvLine() throws IOException {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    JsonNode node = mapper.readTree(line);
+                    JsonNode number = node.path("accountNumber");
+                    JsonNode balance = node.path("balance");
+                    if (!number.isTextual() || number.asText().isBlank()) {
+                        throw new IllegalArgumentException("line " + lineNumber + ": accountNumber is missing or not a string");
+                    }
+                    if (!balance.isNumber()) {
+                        throw new IllegalArgumentException("line " + lineNumber + ": balance is missing or not a number");
+                    }
+                    checkBalance(balance.decimalValue(), lineNumber);
+                    String text = number.asText();
+                    if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0) {
+                        text = '"' + text.replace("\"", "\"\"") + '"';
+                    }
+                    return text + "," + balance.decimalValue().toPlainString();
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Generated accounts prefix000000001.. with balances drawn from a distribution:
+     * uniform in [min, max], or pareto (most accounts near min, a long tail up to max)
+     */
+    public static RowSource generator(long count, String prefix, String distribution,
+                                      BigDecimal min, BigDecimal max, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        boolean pareto = "pareto".equalsIgnoreCase(distribution);
+        double lo = min.doubleValue();
+        double hi = max.doubleValue();
+        return new RowSource() {
+            private long next = 1;
+
+            @Override
+            public String nextCsvLine() {
+                if (next > count) {
+                    return null;
+                }
+                double value;
+                if (pareto) {
+                    // Pareto with alpha = 1.16 (80/20 rule), capped at max
+                    value = Math.min(hi, Math.max(lo, 1.0) * Math.pow(1 - random.nextDouble(), -1 / 1.16));
+                } else {
+                    value = lo + (hi - lo) * random.nextDouble();
+                }
+                String number = Long.toString(next++);
+                StringBuilder line = new StringBuilder(prefix.length() + 24).append(prefix);
+                for (int i = number.length(); i < 9; i++) {
+                    line.append('0');
+                }
+                line.append(number).append(',')
+                    .append(BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).toPlainString());
+                return line.toString();
+            }
+        };
+    }
+
+    /**
+     * Load every row of the source, skipping the first skipRows (already committed
+     * by a previous run) and committing every chunkSize rows
+     * Returns rows, inserted, duplicates, chunks, committedRows, elapsedMs and rowsPerSec.
+     * On failure the exception message includes committedRows, the skipRows to resume with.
+     */
+    public Map<String, Object> load(RowSource source, long skipRows, int chunkSize) throws IOException, SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        long start = System.nanoTime();
+        long committed = skipRows;
+        long rows = 0;
+        long inserted = 0;
+        long chunks = 0;
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+            try (Statement st = conn.createStatement()) {
+                st.execute(STAGING_DDL);
+            }
+            conn.commit();
+
+            try {
+                for (long i = 0; i < skipRows; i++) {
+                    if (source.nextCsvLine() == null) {
+                        break;
+                    }
+                }
+                String line = source.nextCsvLine();
+                while (line != null) {
+                    // COPY one chunk into the staging table, straight from the source
+                    long chunkRows = 0;
+                    CopyIn in = copy.copyIn(COPY_SQL);
+                    try {
+                        while (line != null && chunkRows < chunkSize) {
+                            byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                            in.writeToCopy(bytes, 0, bytes.length);
+                            chunkRows++;
+                            line = source.nextCsvLine();
+                        }
+                        in.endCopy();
+                    } finally {
+                        if (in.isActive()) {
+                            in.cancelCopy();
+                        }
+                    }
+
+                    // Move the chunk into bank.account and commit it
+                    try (PreparedStatement st = conn.prepareStatement(MOVE_SQL)) {
+                        st.setLong(1, (chunkRows + ID_BLOCK - 1) / ID_BLOCK + 1);
+                        inserted += st.executeUpdate();
+                    }
+                    conn.commit();
+                    rows += chunkRows;
+                    committed += chunkRows;
+                    chunks++;
+                }
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                throw new SQLException("bulk load failed after " + committed + " committed rows: " + e.getMessage(), e);
+            }
+        }
+
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("rows", rows);
+        report.put("inserted", inserted);
+        report.put("duplicates", rows - inserted);
+        report.put("chunks", chunks);
+        report.put("committedRows", committed);
+        report.put("elapsedMs", Math.round(elapsedSec * 1000));
+        report.put("rowsPerSec", elapsedSec == 0 ? 0 : Math.round(rows / elapsedSec));
+        return report;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.bank.service;
+
+import com.example.bank.model.TransferResult;
+import com.example.bank.repository.AccountRepository;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Moves money with two single-statement updates and no read-then-write:
+ * UPDATE ... SET balance = balance - :amt WHERE id = :id AND balance >= :amt RETURNING balance
+ * The balance check happens inside the UPDATE, so each row lock is only held from
+ * the statement until commit and no SELECT round-trip is needed.
+ */
+@Component
+public class ConditionalUpdateTransferStrategy implements TransferStrategy {
+    
+    private final AccountRepository accountRepo;
+    private final TransferMetrics metrics;
+    private final LockTimeoutPolicy lockTimeouts;
+    
+    public ConditionalUpdateTransferStrategy(AccountRepository accountRepo, TransferMetrics metrics,
+                                             LockTimeoutPolicy lockTimeouts) {
+        this.accountRepo = accountRepo;
+        this.metrics = metrics;
+        this.lockTimeouts = lockTimeouts;
+    }
+    
+    @Override
+    public String name() {
+        return "conditional-update";
+    }
+    
+    @Override
+    public TransferResult apply(Long fromId, Long toId, BigDecimal amount) {
+        // Lock and validation are the same statements, all timed as the LOCK phase
+        long start = System.nanoTime();
+        try {
+            return lockTimeouts.lock(() -> debitAndCredit(fromId, toId, amount));
+        } finally {
+            metrics.record(TransferMetrics.Phase.LOCK, start);
+        }
+    }
+    
+    private TransferResult debitAndCredit(Long fromId, Long toId, BigDecimal amount) {
+        // ANTI-DEADLOCK STRATEGY: Touch the rows in ascending ID order, like lockByIds
+        if (fromId < toId) {
+            AccountRepository.DebitView fromBal = accountRepo.debitIfSufficient(fromId, amount);
+            if (fromBal.getDebited() == null) {
+                return debitRejected(fromBal);
+            }
+            Optional<BigDecimal> toBal = accountRepo.credit(toId, amount);
+            if (toBal.isEmpty()) {
+                accountRepo.credit(fromId, amount);
+                return TransferResult.fail(TransferResult.Status.ERROR, "account not found");
+            }
+            return TransferResult.ok(null, fromBal.getDebited(), toBal.get());
+        }
+        
+        Optional<BigDecimal> toBal = accountRepo.credit(toId, amount);
+        if (toBal.isEmpty()) {
+            return TransferResult.fail(TransferResult.Status.ERROR, "account not found");
+        }
+        AccountRepository.DebitView fromBal = accountRepo.debitIfSufficient(fromId, amount);
+        if (fromBal.getDebited() == null) {
+            // Undo the credit; we still hold the row lock so nobody saw it
+            accountRepo.credit(toId, amount.negate());
+            return debitRejected(fromBal);
+        }
+        return TransferResult.ok(null, fromBal.getDebited(), toBal.get());
+    }
+    
+    /**
+     * A missing source is an ERROR, so TransferService forgets its cached ID
+     */
+    private static TransferResult debitRejected(AccountRepository.DebitView debit) {
+        if (!Boolean.TRUE.equals(debit.getFound())) {
+            return TransferResult.fail(TransferResult.Status.ERROR, "account not found");
+        }
+        return TransferResult.fail(TransferResult.Status.INSUFFICIENT_FUNDS, "insufficient funds");
+    }
+}
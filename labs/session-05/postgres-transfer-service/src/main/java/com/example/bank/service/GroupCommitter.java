@@ -0,0 +1,147 @@
+package com.example.bank.service;
+
+import com.example.bank.model.TransferRequest;
+import com.example.bank.model.TransferResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Group commit for single transfers
+ * Concurrent callers are queued for a short window and every micro-batch is handed
+ * to the batch handler, which commits it in ONE database transaction (one WAL flush
+ * instead of one per transfer). Each caller still receives its own TransferResult
+ * through a future.
+ */
+public class GroupCommitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitter.class);
+
+    private final BlockingQueue<Pending> queue;
+    private final Function<List<TransferRequest>, List<TransferResult>> batchHandler;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    // Metrics
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong transfers = new AtomicLong();
+
+    public GroupCommitter(Function<List<TransferRequest>, List<TransferResult>> batchHandler,
+                          long windowMillis, int maxBatchSize, int queueCapacity) {
+        if (windowMillis < 0 || maxBatchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("invalid group commit configuration");
+        }
+        this.batchHandler = batchHandler;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.worker = new Thread(this::run, "group-commit");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queue a transfer for the next micro-batch
+     * Returns null when the queue is full or shutting down, so the caller can fall
+     * back to a regular (non grouped) transfer instead of waiting
+     */
+    public CompletableFuture<TransferResult> submit(TransferRequest request) {
+        if (!running) {
+            return null;
+        }
+        Pending p = new Pending(request);
+        return queue.offer(p) ? p.future : null;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getTransferCount() {
+        return transfers.get();
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                // Wait for the first transfer, then keep collecting until the window
+                // closes or the batch is full
+                Pending first = running ? queue.poll(100, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 && running ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Interrupted by shutdown: drain what is already queued before exiting
+                Thread.interrupted();
+            }
+            if (!batch.isEmpty()) {
+                dispatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void dispatch(List<Pending> batch) {
+        List<TransferRequest> requests = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            requests.add(p.request);
+        }
+        try {
+            List<TransferResult> results = batchHandler.apply(requests);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+            batches.incrementAndGet();
+            transfers.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            logger.warn("Group commit of {} transfers failed: {}", batch.size(), e.getMessage());
+            for (Pending p : batch) {
+                p.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Pending {
+        final TransferRequest request;
+        final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+
+        Pending(TransferRequest request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bank.service;
+
+import com.example.bank.model.OutboxEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * POSTs each batch as one JSON array to bank.outbox.http.url (a webhook or an HTTP
+ * bridge in front of a broker); any non-2xx answer fails the batch
+ * Each element is {"id": ..., "type": ..., "aggregateId": ..., "createdAt": ..., "payload": {...}}
+ */
+@Component
+public class HttpOutboxSink implements OutboxSink {
+    
+    private final HttpClient client;
+    private final String url;
+    private final Duration timeout;
+    
+    public HttpOutboxSink(@Value("${bank.outbox.http.url:}") String url,
+                          @Value("${bank.outbox.http.timeout-ms:5000}") long timeoutMs) {
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.url = url;
+    }
+    
+    @Override
+    public String name() {
+        return "http";
+    }
+    
+    @Override
+    public void publish(List<OutboxEvent> events) throws IOException, InterruptedException {
+        if (url.isBlank()) {
+            throw new IllegalStateException("bank.outbox.http.url is not set");
+        }
+        StringBuilder body = new StringBuilder(events.size() * 256).append('[');
+        for (OutboxEvent e : events) {
+            if (body.length() > 1) {
+                body.append(',');
+            }
+            // The payload is already JSON; the other fields are numbers, a fixed type and an ISO timestamp
+            body.append("{\"id\":").append(e.getId())
+                .append(",\"type\":\"").append(e.getEventType())
+                .append("\",\"aggregateId\":").append(e.getAggregateId())
+                .append(",\"createdAt\":\"").append(e.getCreatedAt())
+                .append("\",\"payload\":").append(e.getPayload()).append('}');
+        }
+        body.append(']');
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("outbox sink " + url + " answered " + response.statusCode());
+        }
+    }
+}
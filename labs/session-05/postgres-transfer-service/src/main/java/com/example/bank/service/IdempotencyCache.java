@@ -0,0 +1,108 @@
+package com.example.bank.service;
+
+import com.example.bank.model.TransferResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded, TTL-evicting cache of idempotent transfer results
+ * The key space is split over independent stripes, each guarded by its own monitor,
+ * so concurrent lookups for different keys (e.g. a retry storm) rarely contend.
+ * Each stripe evicts its oldest entry once it is full.
+ */
+public class IdempotencyCache {
+    
+    private final Stripe[] stripes;
+    private final long ttlNanos;
+    
+    public IdempotencyCache(int maxEntries, long ttlMillis, int stripeCount) {
+        if (maxEntries < 1 || ttlMillis < 1 || stripeCount < 1) {
+            throw new IllegalArgumentException("invalid idempotency cache configuration");
+        }
+        // Power of two so the stripe is picked with a mask
+        int n = 1;
+        while (n < stripeCount) {
+            n <<= 1;
+        }
+        int perStripe = Math.max(1, maxEntries / n);
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+    
+    /**
+     * Cached entry for the key, or null when missing or expired
+     */
+    public Entry get(String key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry e = stripe.entries.get(key);
+            if (e != null && System.nanoTime() - e.expiresAt > 0) {
+                stripe.entries.remove(key);
+                return null;
+            }
+            return e;
+        }
+    }
+    
+    public void put(String key, String requestHash, TransferResult result) {
+        Stripe stripe = stripeFor(key);
+        Entry e = new Entry(requestHash, result, System.nanoTime() + ttlNanos);
+        synchronized (stripe) {
+            stripe.entries.put(key, e);
+        }
+    }
+    
+    public int size() {
+        int size = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                size += s.entries.size();
+            }
+        }
+        return size;
+    }
+    
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+    
+    public static final class Entry {
+        private final String requestHash;
+        private final TransferResult result;
+        private final long expiresAt;
+        
+        Entry(String requestHash, TransferResult result, long expiresAt) {
+            this.requestHash = requestHash;
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+        
+        public String getRequestHash() {
+            return requestHash;
+        }
+        
+        public TransferResult getResult() {
+            return result;
+        }
+    }
+    
+    private static final class Stripe {
+        final Map<String, Entry> entries;
+        
+        Stripe(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.bank.service;
+
+import com.example.bank.model.TransferResult;
+import com.example.bank.repository.IdempotencyRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+
+/**
+ * Idempotency-Key support for transfers
+ * Results are stored in bank.idempotency_key in the same transaction as the transfer,
+ * and recent results are also kept in an in-process IdempotencyCache, so a client
+ * retrying after a timeout is answered without touching Postgres.
+ */
+@Service
+public class IdempotencyService {
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO bank.idempotency_key " +
+            "(idempotency_key, request_hash, status, message, tx_id, from_balance, to_balance, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, now()) ON CONFLICT (idempotency_key) DO NOTHING";
+    
+    private final IdempotencyRecordRepository repo;
+    private final JdbcTemplate jdbc;
+    private final IdempotencyCache cache;
+    private final long retentionHours;
+    
+    public IdempotencyService(IdempotencyRecordRepository repo,
+                              JdbcTemplate jdbc,
+                              @Value("${bank.idempotency.cache-size:100000}") int cacheSize,
+                              @Value("${bank.idempotency.cache-ttl-ms:600000}") long cacheTtlMs,
+                              @Value("${bank.idempotency.cache-stripes:64}") int cacheStripes,
+                              @Value("${bank.idempotency.retention-hours:24}") long retentionHours) {
+        this.repo = repo;
+        this.jdbc = jdbc;
+        this.cache = new IdempotencyCache(cacheSize, cacheTtlMs, cacheStripes);
+        this.retentionHours = retentionHours;
+    }
+    
+    /**
+     * Identifies the request a key was first used for
+     */
+    public static String fingerprint(String from, String to, BigDecimal amount) {
+        return from + "|" + to + "|" + amount.stripTrailingZeros().toPlainString();
+    }
+    
+    /**
+     * In-memory fast path: result of a key seen recently, or null
+     */
+    public TransferResult cached(String key, String requestHash) {
+        IdempotencyCache.Entry e = cache.get(key);
+        return e == null ? null : matching(e.getRequestHash(), requestHash, e.getResult());
+    }
+    
+    /**
+     * Result stored in the database (read in the caller's transaction), or null
+     */
+    public TransferResult stored(String key, String requestHash) {
+        return repo.findById(key)
+                .map(r -> {
+                    TransferResult result = r.toResult();
+                    cache.put(key, r.getRequestHash(), result);
+                    return matching(r.getRequestHash(), requestHash, result);
+                })
+                .orElse(null);
+    }
+    
+    /**
+     * Store the result in the caller's transaction
+     * Returns false when another transaction already used the key (the insert waits
+     * for it to commit instead of failing); the caller must then roll back
+     */
+    public boolean store(String key, String requestHash, TransferResult result) {
+        int inserted = jdbc.update(INSERT_SQL, ps -> {
+            ps.setString(1, key);
+            ps.setString(2, requestHash);
+            ps.setString(3, result.getStatus().name());
+            ps.setString(4, result.getMessage());
+            ps.setObject(5, result.getTxId(), Types.BIGINT);
+            ps.setObject(6, result.getFromBalance(), Types.NUMERIC);
+            ps.setObject(7, result.getToBalance(), Types.NUMERIC);
+        });
+        return inserted == 1;
+    }
+    
+    /**
+     * Cache a result once its transaction has committed
+     */
+    public void remember(String key, String requestHash, TransferResult result) {
+        cache.put(key, requestHash, result);
+    }
+    
+    public int getCacheSize() {
+        return cache.size();
+    }
+    
+    /**
+     * Keys older than the retention window can no longer be replayed
+     */
+    @Scheduled(fixedDelayString = "${bank.idempotency.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        repo.deleteOlderThan(OffsetDateTime.now().minusHours(retentionHours));
+    }
+    
+    private static TransferResult matching(String storedHash, String requestHash, TransferResult result) {
+        if (!storedHash.equals(requestHash)) {
+            return TransferResult.fail(TransferResult.Status.ERROR, "idempotency key already used for a different transfer");
+        }
+        return result;
+    }
+}
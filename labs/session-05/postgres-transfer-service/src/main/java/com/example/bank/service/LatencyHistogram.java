@@ -0,0 +1,92 @@
+package com.example.bank.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HDR-style histogram of non-negative long values (log-linear buckets)
+ * Each power-of-two range is split into 16 linear sub-buckets, so any recorded value
+ * is reported with at most ~6% error. Recording is a couple of atomic increments and
+ * never allocates. snapshot(true) returns the current window and starts a new one.
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        sum.addAndGet(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+    
+    /**
+     * count, mean, p50, p90, p99, p999 and max of the current window, values divided by scale
+     * Percentiles report the upper bound of their bucket, capped at the recorded max
+     */
+    public Map<String, Object> snapshot(boolean reset, double scale) {
+        long[] window = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            window[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+            total += window[i];
+        }
+        long windowMax = reset ? max.getAndSet(0) : max.get();
+        long windowSum = reset ? sum.getAndSet(0) : sum.get();
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", total);
+        result.put("mean", total == 0 ? 0.0 : windowSum / scale / total);
+        result.put("p50", Math.min(percentile(window, total, 0.50), windowMax) / scale);
+        result.put("p90", Math.min(percentile(window, total, 0.90), windowMax) / scale);
+        result.put("p99", Math.min(percentile(window, total, 0.99), windowMax) / scale);
+        result.put("p999", Math.min(percentile(window, total, 0.999), windowMax) / scale);
+        result.put("max", windowMax / scale);
+        return result;
+    }
+    
+    private static long percentile(long[] window, long total, double q) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * q);
+        long seen = 0;
+        for (int i = 0; i < window.length; i++) {
+            seen += window[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(window.length - 1);
+    }
+    
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int top = (int) (value >>> shift);
+        return (shift + 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+    
+    static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long top = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
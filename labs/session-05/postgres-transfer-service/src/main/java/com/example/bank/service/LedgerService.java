@@ -0,0 +1,467 @@
+package com.example.bank.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only double-entry ledger (bank.transfer.strategy=ledger)
+ *
+ * A transfer inserts two bank.ledger_entry rows (-amount, +amount) and never updates
+ * bank.account, so hot accounts cost no row lock queue, no dead tuples and no HOT
+ * chains. Balance = account.balance + shards + ledger sum, where the ledger sum is
+ * the snapshot (ledger_snapshot or the in-memory cache) plus the entries after it.
+ *
+ * Serialization uses transaction-level advisory locks keyed by account ID, taken in
+ * ascending ID order:
+ * - Debits take the account's lock EXCLUSIVE, so the funds check and the debit entry
+ *   of one account are serialized (no overdraft)
+ * - Credits take it SHARED: any number of credits to the same account run in parallel
+ * - Rolling a snapshot forward takes it EXCLUSIVE: no entry of the account is in flight
+ *   then, and every later entry gets a higher id, so "sum up to last_entry_id" stays
+ *   exact forever. For the same reason a (ledgerSum, lastEntryId) pair computed under
+ *   the exclusive lock is cached, but only once its transaction committed.
+ * Entries are immutable, so a cached pair never becomes wrong, only older.
+ */
+@Service
+public class LedgerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerService.class);
+
+    private static final String SNAPSHOT_SQL =
+            "SELECT ledger_sum, last_entry_id FROM bank.ledger_snapshot WHERE account_id = ?";
+
+    // Account part (row + shards) and the ledger entries after the cached snapshot
+    private static final String BALANCE_SQL =
+            "SELECT a.balance + COALESCE((SELECT SUM(s.balance) FROM bank.account_balance_shard s " +
+            "WHERE s.account_id = a.id), 0) AS account_total, e.tail, e.entries, e.last_id " +
+            "FROM bank.account a, LATERAL (SELECT COALESCE(SUM(amount), 0) AS tail, count(*) AS entries, MAX(id) AS last_id " +
+            "FROM bank.ledger_entry WHERE account_id = a.id AND id > ?) e WHERE a.id = ?";
+
+    private static final String APPEND_SQL =
+            "INSERT INTO bank.ledger_entry (transfer_id, account_id, amount) " +
+            "SELECT t.id, v.account_id, v.amount FROM (SELECT nextval('bank.ledger_transfer_seq') AS id) t, " +
+            "(VALUES (?::bigint, ?::numeric), (?::bigint, ?::numeric)) v(account_id, amount)";
+
+    private static final String UPSERT_SNAPSHOT_SQL =
+            "INSERT INTO bank.ledger_snapshot (account_id, ledger_sum, last_entry_id, taken_at) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (account_id) DO UPDATE SET ledger_sum = EXCLUDED.ledger_sum, " +
+            "last_entry_id = EXCLUDED.last_entry_id, taken_at = EXCLUDED.taken_at";
+
+    private static final String ACTIVE_ACCOUNTS_SQL =
+            "SELECT account_id, MAX(id) AS last_id FROM bank.ledger_entry WHERE id > ? GROUP BY account_id";
+
+    // One statement, so the sums come from the same MVCC snapshot
+    private static final String TOTAL_MONEY_SQL =
+            "SELECT (SELECT COALESCE(SUM(balance), 0) FROM bank.account) AS accounts, " +
+            "(SELECT COALESCE(SUM(opening_balance), 0) FROM bank.account) AS opening, " +
+            "(SELECT count(*) FROM bank.account WHERE opening_balance IS NULL) AS unverified, " +
+            "(SELECT COALESCE(SUM(balance), 0) FROM bank.account_balance_shard) AS shards, " +
+            "(SELECT COALESCE(SUM(amount), 0) FROM bank.ledger_entry) AS ledger";
+    private static final String NEGATIVE_ACCOUNTS_SQL =
+            "SELECT count(*) FROM bank.account a WHERE a.balance " +
+            "+ COALESCE((SELECT SUM(s.balance) FROM bank.account_balance_shard s WHERE s.account_id = a.id), 0) " +
+            "+ COALESCE((SELECT SUM(e.amount) FROM bank.ledger_entry e WHERE e.account_id = a.id), 0) < 0";
+    private static final String UNBALANCED_TRANSFERS_SQL =
+            "SELECT count(*) FROM (SELECT transfer_id FROM bank.ledger_entry GROUP BY transfer_id " +
+            "HAVING SUM(amount) <> 0 OR count(*) <> 2) u";
+    private static final String SNAPSHOT_DRIFT_SQL =
+            "SELECT count(*) FROM bank.ledger_snapshot s WHERE s.ledger_sum <> COALESCE((SELECT SUM(e.amount) " +
+            "FROM bank.ledger_entry e WHERE e.account_id = s.account_id AND e.id <= s.last_entry_id), 0)";
+
+    private final JdbcTemplate jdbc;
+    private final PlatformTransactionManager txManager;
+    private final AccountIdResolver idResolver;
+    private final LockTimeoutPolicy lockTimeouts;
+    private final int maxCachedAccounts;
+    private final ConcurrentMap<Long, Snapshot> cache = new ConcurrentHashMap<>();
+
+    // Highest entry id already looked at by the snapshot job of this instance
+    private final AtomicLong scannedUpTo = new AtomicLong();
+
+    // Metrics
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder tailEntries = new LongAdder();
+    private final LongAdder balanceReads = new LongAdder();
+    private final AtomicLong snapshotsRolled = new AtomicLong();
+
+    public LedgerService(JdbcTemplate jdbc,
+                         PlatformTransactionManager txManager,
+                         AccountIdResolver idResolver,
+                         LockTimeoutPolicy lockTimeouts,
+                         @Value("${bank.ledger.cache.max-entries:500000}") int maxCachedAccounts) {
+        this.jdbc = jdbc;
+        this.txManager = txManager;
+        this.idResolver = idResolver;
+        this.lockTimeouts = lockTimeouts;
+        this.maxCachedAccounts = maxCachedAccounts;
+    }
+
+    /**
+     * Take the advisory locks of a transfer (or a batch of transfers) in ascending ID
+     * order: exclusive for debited accounts, shared for accounts that are only credited.
+     * Held until the caller's transaction ends; taking one again costs another round
+     * trip, so a batch takes all its locks with one call. Waits are bounded by the
+     * LockTimeoutPolicy.
+     */
+    public void lockAll(Collection<Long> debited, Collection<Long> credited) {
+        TreeMap<Long, Boolean> exclusive = new TreeMap<>();
+        for (Long id : credited) {
+            exclusive.put(id, false);
+        }
+        for (Long id : debited) {
+            exclusive.put(id, true);
+        }
+        lockTimeouts.lock(() -> {
+            for (Map.Entry<Long, Boolean> e : exclusive.entrySet()) {
+                jdbc.queryForObject(e.getValue() ? "SELECT pg_advisory_xact_lock(?)" : "SELECT pg_advisory_xact_lock_shared(?)",
+                        Object.class, e.getKey());
+            }
+        });
+    }
+
+    /**
+     * Exact total balance of an account whose exclusive lock the caller holds, or null
+     * when it doesn't exist. The ledger part is cached once the transaction commits.
+     */
+    public BigDecimal lockedBalance(long accountId) {
+        Balance b = readBalance(accountId);
+        if (b == null) {
+            return null;
+        }
+        advanceAfterCommit(accountId, b.ledger);
+        return b.total();
+    }
+
+    /**
+     * Transfers applied under advisory locks the caller already holds, one or a whole
+     * batch (see Batch); the existence of the given accounts is checked with one query
+     */
+    public Batch batch(Collection<Long> accountIds) {
+        Long[] ids = accountIds.toArray(new Long[0]);
+        List<Long> found = jdbc.query("SELECT id FROM bank.account WHERE id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)),
+                (rs, i) -> rs.getLong(1));
+        return new Batch(new HashSet<>(found));
+    }
+
+    /**
+     * Append the two entries of a transfer, in the caller's transaction
+     */
+    public void append(long fromId, long toId, BigDecimal amount) {
+        jdbc.update(APPEND_SQL, fromId, amount.negate(), toId, amount);
+    }
+
+    /**
+     * Append the entries of many transfers with one JDBC batch (one round trip)
+     */
+    public void appendAll(List<Posting> postings) {
+        jdbc.batchUpdate(APPEND_SQL, postings, postings.size(), (ps, p) -> {
+            ps.setLong(1, p.fromId);
+            ps.setBigDecimal(2, p.amount.negate());
+            ps.setLong(3, p.toId);
+            ps.setBigDecimal(4, p.amount);
+        });
+    }
+
+    /**
+     * Current total balance of an account (committed entries), without any lock
+     * Read-only, so served by the replica when read-replica routing is enabled
+     */
+    @Transactional(readOnly = true)
+    public Optional<BigDecimal> totalBalance(String accountNumber) {
+        Long id = idResolver.resolve(accountNumber);
+        if (id == null) {
+            return Optional.empty();
+        }
+        Balance b = readBalance(id);
+        if (b == null) {
+            idResolver.invalidate(accountNumber);
+            return Optional.empty();
+        }
+        return Optional.of(b.total());
+    }
+
+    /**
+     * Roll the snapshot of every account with new entries forward, one short
+     * transaction per account (its exclusive lock makes debits of that account wait
+     * for a moment, credits are not involved until the lock is requested)
+     */
+    @Scheduled(fixedDelayString = "${bank.ledger.snapshot-interval-ms:10000}")
+    public void rollSnapshots() {
+        long from = scannedUpTo.get();
+        List<long[]> active;
+        try {
+            active = jdbc.query(ACTIVE_ACCOUNTS_SQL, (rs, i) -> new long[] { rs.getLong("account_id"), rs.getLong("last_id") }, from);
+        } catch (DataAccessException e) {
+            logger.error("Ledger snapshot scan failed: {}", e.getMessage());
+            return;
+        }
+        TransactionTemplate template = new TransactionTemplate(txManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        long seen = from;
+        for (long[] account : active) {
+            seen = Math.max(seen, account[1]);
+            try {
+                template.executeWithoutResult(status -> rollSnapshot(account[0]));
+            } catch (DataAccessException e) {
+                logger.warn("Ledger snapshot of account {} failed: {}", account[0], e.getMessage());
+            }
+        }
+        // An entry below the mark that commits late is still picked up by the next roll
+        // of its account: per account, only last_entry_id matters
+        scannedUpTo.accumulateAndGet(seen, Math::max);
+    }
+
+    private void rollSnapshot(long accountId) {
+        jdbc.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, accountId);
+        Snapshot stored = loadSnapshot(accountId);
+        Map<String, Object> tail = jdbc.queryForMap(
+                "SELECT COALESCE(SUM(amount), 0) AS tail, MAX(id) AS last_id FROM bank.ledger_entry " +
+                "WHERE account_id = ? AND id > ?", accountId, stored.lastEntryId);
+        if (tail.get("last_id") == null) {
+            advanceAfterCommit(accountId, stored);
+            return;
+        }
+        Snapshot rolled = new Snapshot(stored.ledgerSum.add((BigDecimal) tail.get("tail")), ((Number) tail.get("last_id")).longValue());
+        jdbc.update(UPSERT_SNAPSHOT_SQL, accountId, rolled.ledgerSum, rolled.lastEntryId, OffsetDateTime.now(ZoneOffset.UTC));
+        advanceAfterCommit(accountId, rolled);
+        snapshotsRolled.incrementAndGet();
+    }
+
+    /**
+     * Money conservation check, valid in every mode: the sum of all balances (rows,
+     * shards, ledger entries) must equal the money seeded into the accounts (the sum
+     * of opening_balance; not verifiable while accounts predate that column), no
+     * account may be negative, every ledger transfer must net to zero and every
+     * snapshot must match its entries. Runs in one REPEATABLE READ transaction.
+     */
+    public Map<String, Object> checkInvariants() {
+        TransactionTemplate template = new TransactionTemplate(txManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        template.setReadOnly(true);
+        return template.execute(status -> {
+            Map<String, Object> sums = jdbc.queryForMap(TOTAL_MONEY_SQL);
+            BigDecimal accounts = (BigDecimal) sums.get("accounts");
+            BigDecimal shards = (BigDecimal) sums.get("shards");
+            BigDecimal ledger = (BigDecimal) sums.get("ledger");
+            BigDecimal opening = (BigDecimal) sums.get("opening");
+            long unverified = ((Number) sums.get("unverified")).longValue();
+            BigDecimal totalMoney = accounts.add(shards).add(ledger);
+            Boolean conserved = unverified == 0 ? totalMoney.compareTo(opening) == 0 : null;
+            long negative = jdbc.queryForObject(NEGATIVE_ACCOUNTS_SQL, Long.class);
+            long unbalanced = jdbc.queryForObject(UNBALANCED_TRANSFERS_SQL, Long.class);
+            long drift = jdbc.queryForObject(SNAPSHOT_DRIFT_SQL, Long.class);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("totalMoney", totalMoney);
+            result.put("openingTotal", opening);
+            result.put("unverifiedAccounts", unverified);
+            result.put("moneyConserved", conserved);
+            result.put("accountBalances", accounts);
+            result.put("shardBalances", shards);
+            result.put("ledgerSum", ledger);
+            result.put("negativeAccounts", negative);
+            result.put("unbalancedLedgerTransfers", unbalanced);
+            result.put("snapshotDrift", drift);
+            result.put("ok", !Boolean.FALSE.equals(conserved) && ledger.signum() == 0
+                    && negative == 0 && unbalanced == 0 && drift == 0);
+            return result;
+        });
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("cachedAccounts", cache.size());
+        snapshot.put("cacheHits", cacheHits.sum());
+        snapshot.put("cacheMisses", cacheMisses.sum());
+        long reads = balanceReads.sum();
+        snapshot.put("avgTailEntries", reads == 0 ? 0.0 : tailEntries.sum() / (double) reads);
+        snapshot.put("snapshotsRolled", snapshotsRolled.get());
+        snapshot.put("scannedUpTo", scannedUpTo.get());
+        return snapshot;
+    }
+
+    private Balance readBalance(long accountId) {
+        Snapshot base = cache.get(accountId);
+        if (base != null) {
+            cacheHits.increment();
+        } else {
+            cacheMisses.increment();
+            // Stored snapshots are always exact: cacheable without any lock
+            base = loadSnapshot(accountId);
+            advance(accountId, base);
+        }
+        Snapshot snapshot = base;
+        List<Balance> rows = jdbc.query(BALANCE_SQL, (rs, i) -> {
+            BigDecimal tail = rs.getBigDecimal("tail");
+            tailEntries.add(rs.getLong("entries"));
+            long lastId = rs.getLong("last_id");
+            Snapshot ledger = rs.wasNull() ? snapshot : new Snapshot(snapshot.ledgerSum.add(tail), lastId);
+            return new Balance(rs.getBigDecimal("account_total"), ledger);
+        }, snapshot.lastEntryId, accountId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        balanceReads.increment();
+        return rows.get(0);
+    }
+
+    private Snapshot loadSnapshot(long accountId) {
+        List<Snapshot> found = jdbc.query(SNAPSHOT_SQL,
+                (rs, i) -> new Snapshot(rs.getBigDecimal("ledger_sum"), rs.getLong("last_entry_id")), accountId);
+        return found.isEmpty() ? Snapshot.EMPTY : found.get(0);
+    }
+
+    /**
+     * Cache the ledger part once the current transaction committed (immediately
+     * without one): until then it may include this transaction's own entries
+     */
+    private void advanceAfterCommit(long accountId, Snapshot snapshot) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            advance(accountId, snapshot);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                advance(accountId, snapshot);
+            }
+        });
+    }
+
+    private void advance(long accountId, Snapshot snapshot) {
+        cache.merge(accountId, snapshot, (old, neu) -> neu.lastEntryId > old.lastEntryId ? neu : old);
+        int excess = cache.size() - maxCachedAccounts;
+        if (excess > 0) {
+            Iterator<Long> it = cache.keySet().iterator();
+            while (excess-- > 0 && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Transfers applied under held advisory locks, appended together by flush()
+     * A debited account's balance is read once (lockedBalance: exclusive lock needed)
+     * and then kept up to date in memory, including the credits added before its first
+     * read, so earlier transfers of the batch still fund later debits.
+     */
+    public final class Batch {
+        private final Set<Long> existing;
+        private final Map<Long, BigDecimal> balances = new HashMap<>();
+        private final Map<Long, BigDecimal> unread = new HashMap<>();
+        private final List<Posting> postings = new ArrayList<>();
+
+        private Batch(Set<Long> existing) {
+            this.existing = existing;
+        }
+
+        public boolean exists(long accountId) {
+            return existing.contains(accountId);
+        }
+
+        /**
+         * Current balance of a debited account, or null when it doesn't exist
+         */
+        public BigDecimal balance(long accountId) {
+            BigDecimal balance = balances.get(accountId);
+            if (balance == null) {
+                BigDecimal stored = lockedBalance(accountId);
+                if (stored == null) {
+                    return null;
+                }
+                balance = stored.add(unread.getOrDefault(accountId, BigDecimal.ZERO));
+                unread.remove(accountId);
+                balances.put(accountId, balance);
+            }
+            return balance;
+        }
+
+        public void add(long fromId, long toId, BigDecimal amount) {
+            postings.add(new Posting(fromId, toId, amount));
+            move(fromId, amount.negate());
+            move(toId, amount);
+        }
+
+        public void flush() {
+            if (!postings.isEmpty()) {
+                appendAll(postings);
+                postings.clear();
+            }
+        }
+
+        private void move(long accountId, BigDecimal amount) {
+            if (balances.containsKey(accountId)) {
+                balances.merge(accountId, amount, BigDecimal::add);
+            } else {
+                unread.merge(accountId, amount, BigDecimal::add);
+            }
+        }
+    }
+
+    /**
+     * One transfer to append: a debit entry on fromId and a credit entry on toId
+     */
+    public static final class Posting {
+        final long fromId;
+        final long toId;
+        final BigDecimal amount;
+
+        public Posting(long fromId, long toId, BigDecimal amount) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.amount = amount;
+        }
+    }
+
+    /**
+     * Sum of an account's ledger entries up to (and including) lastEntryId
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(BigDecimal.ZERO, 0);
+
+        final BigDecimal ledgerSum;
+        final long lastEntryId;
+
+        Snapshot(BigDecimal ledgerSum, long lastEntryId) {
+            this.ledgerSum = ledgerSum;
+            this.lastEntryId = lastEntryId;
+        }
+    }
+
+    private static final class Balance {
+        final BigDecimal accountTotal;
+        final Snapshot ledger;
+
+        Balance(BigDecimal accountTotal, Snapshot ledger) {
+            this.accountTotal = accountTotal;
+            this.ledger = ledger;
+        }
+
+        BigDecimal total() {
+            return accountTotal.add(ledger.ledgerSum);
+        }
+    }
+}
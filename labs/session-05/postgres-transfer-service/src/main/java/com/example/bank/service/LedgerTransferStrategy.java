@@ -0,0 +1,68 @@
+package com.example.bank.service;
+
+import com.example.bank.model.TransferResult;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Insert-only transfers: two ledger_entry rows instead of two account updates
+ * The debited account is locked exclusively and its exact balance checked, the
+ * credited one only shared, so credits to a hot account never wait for each other.
+ * The credited account's balance is not read and is returned as null.
+ */
+@Component
+public class LedgerTransferStrategy implements TransferStrategy {
+
+    public static final String NAME = "ledger";
+
+    private final LedgerService ledger;
+    private final TransferMetrics metrics;
+
+    public LedgerTransferStrategy(LedgerService ledger, TransferMetrics metrics) {
+        this.ledger = ledger;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public TransferResult apply(Long fromId, Long toId, BigDecimal amount) {
+        // ANTI-DEADLOCK STRATEGY: Advisory locks in ascending ID order
+        long start = System.nanoTime();
+        ledger.lockAll(List.of(fromId), List.of(toId));
+        metrics.record(TransferMetrics.Phase.LOCK, start);
+
+        LedgerService.Batch batch = ledger.batch(List.of(fromId, toId));
+        TransferResult result = applyLocked(fromId, toId, amount, batch);
+        batch.flush();
+        return result;
+    }
+
+    /**
+     * Apply step of a transfer whose advisory locks are already held (by apply, or by
+     * a whole batch locked at once); the entries are appended at batch.flush()
+     */
+    public TransferResult applyLocked(Long fromId, Long toId, BigDecimal amount, LedgerService.Batch batch) {
+        long start = System.nanoTime();
+        BigDecimal fromBalance;
+        try {
+            fromBalance = batch.exists(fromId) && batch.exists(toId) ? batch.balance(fromId) : null;
+            if (fromBalance == null) {
+                return TransferResult.fail(TransferResult.Status.ERROR, "account not found");
+            }
+            if (fromBalance.compareTo(amount) < 0) {
+                return TransferResult.fail(TransferResult.Status.INSUFFICIENT_FUNDS, "insufficient funds");
+            }
+        } finally {
+            metrics.record(TransferMetrics.Phase.VALIDATE, start);
+        }
+
+        batch.add(fromId, toId, amount);
+        return TransferResult.ok(null, fromBalance.subtract(amount), null);
+    }
+}
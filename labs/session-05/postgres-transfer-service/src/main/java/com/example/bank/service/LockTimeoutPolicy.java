@@ -0,0 +1,170 @@
+package com.example.bank.service;
+
+import io.r2dbc.spi.R2dbcException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Fail-fast lock waits: lock_timeout and statement_timeout set on the transaction
+ * before it takes its account locks (lockByIds, or the advisory locks of the ledger)
+ *
+ * Both are SET LOCAL (set_config(..., true)), once per transaction, in one statement,
+ * and stay in force until it ends. The values come from the endpoint of the current
+ * HTTP request (bank.transfer.timeouts.*-by-endpoint, "path=ms") or the defaults,
+ * which also apply off request threads (group commit, scheduled transfers); 0 means
+ * no limit. The R2DBC path reads its values with lockMillis / statementMillis and sets
+ * them on its own connection. A transfer stuck behind a long transaction then gives up after lock-ms
+ * and releases its connection, instead of holding it until the pool is exhausted.
+ * Time spent waiting before a timeout goes to TransferMetrics.
+ */
+@Component
+public class LockTimeoutPolicy {
+
+    // lock_not_available: raised when lock_timeout expires
+    private static final String LOCK_TIMEOUT_STATE = "55P03";
+
+    private static final String SET_SQL =
+            "SELECT set_config('lock_timeout', ?, true), set_config('statement_timeout', ?, true)";
+
+    private final JdbcTemplate jdbc;
+    private final TransferMetrics metrics;
+    private final Timeouts defaults;
+    private final Map<String, Timeouts> byEndpoint = new HashMap<>();
+
+    public LockTimeoutPolicy(JdbcTemplate jdbc,
+                             TransferMetrics metrics,
+                             @Value("${bank.transfer.timeouts.lock-ms:2000}") long lockMillis,
+                             @Value("${bank.transfer.timeouts.statement-ms:10000}") long statementMillis,
+                             @Value("${bank.transfer.timeouts.lock-ms-by-endpoint:}") List<String> lockByEndpoint,
+                             @Value("${bank.transfer.timeouts.statement-ms-by-endpoint:}") List<String> statementByEndpoint) {
+        this.jdbc = jdbc;
+        this.metrics = metrics;
+        this.defaults = new Timeouts(lockMillis, statementMillis);
+        parse(lockByEndpoint).forEach((path, ms) ->
+                byEndpoint.put(path, new Timeouts(ms, defaults.statementMillis)));
+        parse(statementByEndpoint).forEach((path, ms) ->
+                byEndpoint.merge(path, new Timeouts(defaults.lockMillis, ms), (t, s) -> new Timeouts(t.lockMillis, ms)));
+    }
+
+    /**
+     * True when the failure is an expired lock_timeout (JDBC or R2DBC)
+     */
+    public static boolean isLockTimeout(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql && LOCK_TIMEOUT_STATE.equals(sql.getSQLState())) {
+                return true;
+            }
+            if (t instanceof R2dbcException r2dbc && LOCK_TIMEOUT_STATE.equals(r2dbc.getSqlState())) {
+                return true;
+            }
+            if (t == t.getCause()) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run a locking call of the current transaction under its timeouts
+     */
+    public <T> T lock(Supplier<T> locking) {
+        applyToTransaction();
+        long start = System.nanoTime();
+        try {
+            return locking.get();
+        } catch (RuntimeException e) {
+            if (isLockTimeout(e)) {
+                metrics.recordLockTimeout(start);
+            }
+            throw e;
+        }
+    }
+
+    public void lock(Runnable locking) {
+        lock(() -> {
+            locking.run();
+            return null;
+        });
+    }
+
+    /**
+     * lock_timeout of an endpoint (mapping pattern, e.g. "/api/reactive/transfer") in ms, 0 = no limit
+     */
+    public long lockMillis(String endpoint) {
+        return byEndpoint.getOrDefault(endpoint, defaults).lockMillis;
+    }
+
+    /**
+     * statement_timeout of an endpoint in ms, 0 = no limit
+     */
+    public long statementMillis(String endpoint) {
+        return byEndpoint.getOrDefault(endpoint, defaults).statementMillis;
+    }
+
+    private void applyToTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (TransactionSynchronizationManager.hasResource(this)) {
+                return;
+            }
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(LockTimeoutPolicy.this);
+                }
+            });
+        }
+        Timeouts t = current();
+        if (t.lockMillis > 0 || t.statementMillis > 0) {
+            jdbc.query(SET_SQL, (RowCallbackHandler) rs -> { },
+                    String.valueOf(t.lockMillis), String.valueOf(t.statementMillis));
+        }
+    }
+
+    private Timeouts current() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null) {
+            return defaults;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return pattern == null ? defaults : byEndpoint.getOrDefault(pattern.toString(), defaults);
+    }
+
+    private static Map<String, Long> parse(List<String> entries) {
+        Map<String, Long> parsed = new HashMap<>();
+        for (String entry : entries) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("invalid timeout: " + entry);
+            }
+            parsed.put(parts[0].trim(), Long.parseLong(parts[1].trim()));
+        }
+        return parsed;
+    }
+
+    private static final class Timeouts {
+        final long lockMillis;
+        final long statementMillis;
+
+        Timeouts(long lockMillis, long statementMillis) {
+            this.lockMillis = lockMillis;
+            this.statementMillis = statementMillis;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.bank.service;
+
+import com.example.bank.model.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Writes the events to the application log (DEBUG), for development
+ */
+@Component
+public class LoggingOutboxSink implements OutboxSink {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LoggingOutboxSink.class);
+    
+    @Override
+    public String name() {
+        return "log";
+    }
+    
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        for (OutboxEvent e : events) {
+            logger.debug("{} #{} {}", e.getEventType(), e.getId(), e.getPayload());
+        }
+    }
+}
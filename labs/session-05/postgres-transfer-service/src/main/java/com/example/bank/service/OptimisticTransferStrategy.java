@@ -0,0 +1,65 @@
+package com.example.bank.service;
+
+import com.example.bank.model.Account;
+import com.example.bank.model.TransferResult;
+import com.example.bank.repository.AccountRepository;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Reads both rows without locks and relies on the @Version column of Account
+ * The flush issues UPDATE ... WHERE id = ? AND version = ?; if another transfer
+ * changed the row in between, an OptimisticLockingFailureException is raised and
+ * transferWithRetry runs the transfer again.
+ */
+@Component
+public class OptimisticTransferStrategy implements TransferStrategy {
+    
+    private final AccountRepository accountRepo;
+    private final TransferMetrics metrics;
+    
+    public OptimisticTransferStrategy(AccountRepository accountRepo, TransferMetrics metrics) {
+        this.accountRepo = accountRepo;
+        this.metrics = metrics;
+    }
+    
+    @Override
+    public String name() {
+        return "optimistic";
+    }
+    
+    @Override
+    public TransferResult apply(Long fromId, Long toId, BigDecimal amount) {
+        // No lock: the LOCK phase is just reading both rows
+        long start = System.nanoTime();
+        Optional<Account> fromOpt = accountRepo.findById(fromId);
+        Optional<Account> toOpt = accountRepo.findById(toId);
+        metrics.record(TransferMetrics.Phase.LOCK, start);
+        if (fromOpt.isEmpty() || toOpt.isEmpty()) {
+            return TransferResult.fail(TransferResult.Status.ERROR, "account not found");
+        }
+        
+        start = System.nanoTime();
+        try {
+            return debitAndCredit(fromOpt.get(), toOpt.get(), amount);
+        } finally {
+            // Includes the version-checked flush
+            metrics.record(TransferMetrics.Phase.VALIDATE, start);
+        }
+    }
+    
+    private TransferResult debitAndCredit(Account from, Account to, BigDecimal amount) {
+        if (from.getBalance().compareTo(amount) < 0) {
+            return TransferResult.fail(TransferResult.Status.INSUFFICIENT_FUNDS, "insufficient funds");
+        }
+        
+        from.setBalance(from.getBalance().subtract(amount));
+        to.setBalance(to.getBalance().add(amount));
+        
+        // Flush now so a version conflict surfaces here (and is retried) instead of at commit
+        accountRepo.flush();
+        return TransferResult.ok(null, from.getBalance(), to.getBalance());
+    }
+}
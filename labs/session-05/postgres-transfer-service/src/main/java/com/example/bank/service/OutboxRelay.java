@@ -0,0 +1,215 @@
+package com.example.bank.service;
+
+import com.example.bank.model.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes bank.outbox events to the configured OutboxSink
+ *
+ * Each batch is one transaction: claim up to batch-size pending rows with
+ * FOR UPDATE SKIP LOCKED, publish them, mark them all processed with one UPDATE and
+ * commit. Relays of other instances skip the claimed rows instead of waiting for them,
+ * so the relay scales out without two instances processing the same event. If the sink
+ * fails the transaction rolls back and the batch is claimed again on the next poll.
+ * Events are published in id order within a batch; batches of different instances
+ * may interleave.
+ * The relay has its own thread: a slow sink (HTTP) then never delays the other
+ * scheduled jobs, and a run stops after max-batches-per-run batches.
+ */
+@Service
+public class OutboxRelay {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+    
+    // Served by the partial index ix_outbox_pending
+    private static final String CLAIM_SQL =
+            "SELECT id, event_type, aggregate_id, payload::text AS payload, created_at FROM bank.outbox " +
+            "WHERE processed_at IS NULL ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String MARK_SQL = "UPDATE bank.outbox SET processed_at = now() WHERE id = ANY (?)";
+    private static final String PURGE_SQL =
+            "DELETE FROM bank.outbox WHERE id IN (SELECT id FROM bank.outbox WHERE processed_at < ? LIMIT 10000)";
+    private static final String PENDING_SQL =
+            "SELECT count(*) AS pending, " +
+            "(SELECT created_at FROM bank.outbox WHERE processed_at IS NULL ORDER BY id LIMIT 1) AS oldest " +
+            "FROM bank.outbox WHERE processed_at IS NULL";
+    
+    private static final RowMapper<OutboxEvent> EVENT = (rs, i) -> new OutboxEvent(
+            rs.getLong("id"), rs.getString("event_type"), rs.getLong("aggregate_id"),
+            rs.getString("payload"), rs.getObject("created_at", OffsetDateTime.class));
+    
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate txTemplate;
+    private final OutboxSink sink;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final long pollIntervalMillis;
+    private final long retentionHours;
+    private final ScheduledExecutorService relayThread;
+    
+    // Metrics
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong lagMillisTotal = new AtomicLong();
+    private final AtomicLong lagMillisMax = new AtomicLong();
+    private volatile long lastLagMillis;
+    
+    public OutboxRelay(JdbcTemplate jdbc,
+                       PlatformTransactionManager txManager,
+                       List<OutboxSink> sinks,
+                       @Value("${bank.outbox.sink:log}") String sinkName,
+                       @Value("${bank.outbox.relay.enabled:true}") boolean enabled,
+                       @Value("${bank.outbox.relay.batch-size:500}") int batchSize,
+                       @Value("${bank.outbox.relay.max-batches-per-run:20}") int maxBatchesPerRun,
+                       @Value("${bank.outbox.relay.poll-interval-ms:200}") long pollIntervalMillis,
+                       @Value("${bank.outbox.retention-hours:24}") long retentionHours) {
+        this.jdbc = jdbc;
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.sink = sinks.stream()
+                .filter(s -> s.name().equals(sinkName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("unknown bank.outbox.sink: " + sinkName));
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.retentionHours = retentionHours;
+        this.relayThread = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "outbox-relay");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            relayThread.scheduleWithFixedDelay(this::relay, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        relayThread.shutdownNow();
+    }
+    
+    /**
+     * Drain the outbox: keep relaying while full batches come back, up to
+     * max-batches-per-run batches (the rest waits for the next poll)
+     */
+    public void relay() {
+        try {
+            for (int i = 0; i < maxBatchesPerRun && !Thread.currentThread().isInterrupted(); i++) {
+                if (relayBatch() < batchSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the periodic task
+            logger.error("Outbox relay failed: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Claim, publish and mark one batch; returns the number of events published
+     */
+    public int relayBatch() {
+        Integer count = txTemplate.execute(status -> {
+            List<OutboxEvent> events = jdbc.query(CLAIM_SQL, EVENT, batchSize);
+            if (events.isEmpty()) {
+                return 0;
+            }
+            try {
+                sink.publish(events);
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    // Shutting down: keep the flag so relay() stops
+                    Thread.currentThread().interrupt();
+                }
+                // Roll back: the rows are unlocked and claimed again on the next poll
+                status.setRollbackOnly();
+                failures.incrementAndGet();
+                logger.warn("Outbox sink {} failed for {} events: {}", sink.name(), events.size(), e.getMessage());
+                return 0;
+            }
+            Long[] ids = events.stream().map(OutboxEvent::getId).toArray(Long[]::new);
+            jdbc.update(MARK_SQL, (PreparedStatementSetter) ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+            recordLag(events);
+            return events.size();
+        });
+        return count == null ? 0 : count;
+    }
+    
+    /**
+     * Delete processed events older than retention-hours, in slices of 10000 rows
+     */
+    @Scheduled(fixedDelayString = "${bank.outbox.purge-interval-ms:3600000}")
+    public void purgeProcessed() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minusHours(retentionHours);
+        while (jdbc.update(PURGE_SQL, cutoff) > 0) {
+            // Next slice
+        }
+    }
+    
+    /**
+     * Relay lag: age of the oldest pending event (backlog) and commit-to-publish
+     * delay of the published events
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("relayEnabled", enabled);
+        snapshot.put("sink", sink.name());
+        jdbc.query(PENDING_SQL, rs -> {
+            OffsetDateTime oldest = rs.getObject("oldest", OffsetDateTime.class);
+            snapshot.put("pending", rs.getLong("pending"));
+            snapshot.put("oldestPendingAgeMs", oldest == null ? 0 : Duration.between(oldest, OffsetDateTime.now()).toMillis());
+        });
+        long n = published.get();
+        snapshot.put("published", n);
+        snapshot.put("batches", batches.get());
+        snapshot.put("failures", failures.get());
+        snapshot.put("lastLagMs", lastLagMillis);
+        snapshot.put("avgLagMs", n == 0 ? 0.0 : lagMillisTotal.get() / (double) n);
+        snapshot.put("maxLagMs", lagMillisMax.get());
+        return snapshot;
+    }
+    
+    private void recordLag(List<OutboxEvent> events) {
+        OffsetDateTime now = OffsetDateTime.now();
+        long total = 0;
+        long max = 0;
+        for (OutboxEvent e : events) {
+            long lag = Math.max(0, Duration.between(e.getCreatedAt(), now).toMillis());
+            total += lag;
+            max = Math.max(max, lag);
+        }
+        published.addAndGet(events.size());
+        batches.incrementAndGet();
+        lagMillisTotal.addAndGet(total);
+        lagMillisMax.accumulateAndGet(max, Math::max);
+        lastLagMillis = max;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.bank.service;
+
+import com.example.bank.model.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Where the outbox relay publishes events (a broker, a webhook...)
+ * Selected per deployment with the bank.outbox.sink property (see {@link #name()}).
+ * Delivery is at-least-once: a batch is published before it is marked processed, so
+ * after a crash in between it is published again. Consumers deduplicate on the event id.
+ */
+public interface OutboxSink {
+    
+    /**
+     * Value of bank.outbox.sink that selects this sink
+     */
+    String name();
+    
+    /**
+     * Publish the batch, in id order; throwing leaves every event of the batch pending
+     */
+    void publish(List<OutboxEvent> events) throws Exception;
+}
@@ -0,0 +1,103 @@
+package com.example.bank.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes TransferCompleted events to bank.outbox in the transaction of the transfer
+ * (transactional outbox): an event exists if and only if its transfer committed.
+ * Like the in-transaction audit mode, the events of a transaction are inserted with
+ * one JDBC batch just before commit. OutboxRelay publishes them afterwards.
+ */
+@Component
+public class OutboxWriter {
+    
+    public static final String TRANSFER_COMPLETED = "TransferCompleted";
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO bank.outbox (event_type, aggregate_id, payload) VALUES (?, ?, ?::jsonb)";
+    
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper mapper;
+    private final boolean enabled;
+    
+    public OutboxWriter(JdbcTemplate jdbc,
+                        ObjectMapper mapper,
+                        @Value("${bank.outbox.enabled:true}") boolean enabled) {
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+        this.enabled = enabled;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Record a committed-with-the-caller transfer
+     */
+    public void transferCompleted(Long txId, String from, String to, BigDecimal amount, OffsetDateTime timestamp) {
+        if (!enabled) {
+            return;
+        }
+        Object[] row = { TRANSFER_COMPLETED, txId, transferPayload(txId, from, to, amount, timestamp) };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            jdbc.update(INSERT_SQL, row);
+            return;
+        }
+        pendingForCurrentTransaction().add(row);
+    }
+    
+    /**
+     * JSON payload of a TransferCompleted event
+     */
+    public String transferPayload(Long txId, String from, String to, BigDecimal amount, OffsetDateTime timestamp) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("txId", txId);
+        payload.put("from", from);
+        payload.put("to", to);
+        payload.put("amount", amount.toPlainString());
+        payload.put("timestamp", timestamp.toString());
+        try {
+            return mapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<Object[]> pendingForCurrentTransaction() {
+        List<Object[]> pending = (List<Object[]>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, rows);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (!rows.isEmpty()) {
+                    jdbc.batchUpdate(INSERT_SQL, rows);
+                }
+            }
+            
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(OutboxWriter.this);
+            }
+        });
+        return rows;
+    }
+}
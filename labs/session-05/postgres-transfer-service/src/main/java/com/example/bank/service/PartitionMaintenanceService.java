@@ -0,0 +1,256 @@
+package com.example.bank.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Monthly range partitions of the append-only tables bank.tx and bank.audit_log
+ *
+ * - Creates the partitions of the next premake-months months ahead of time (at startup,
+ *   before the first insert, and daily), named tx_pYYYYMM / audit_log_pYYYYMM, UTC months
+ * - A plain table left by an older version is converted once: it is renamed to
+ *   <table>_legacy and attached as the partition [MINVALUE, first month after its rows)
+ * - Retention: partitions entirely older than retention-months are detached with
+ *   DETACH PARTITION CONCURRENTLY (no ACCESS EXCLUSIVE lock on the parent, PostgreSQL 14+)
+ *   and then dropped, or kept as standalone tables for archiving (retention-action=detach).
+ *   This replaces a DELETE: no dead tuples, no vacuum and no index bloat.
+ * - Before a bank.tx partition is detached, its per-account net amounts are added to
+ *   bank.tx_archived_net, in the transaction that lists it in tx_archived_partition,
+ *   so reconciliation can still start from opening_balance
+ */
+@Service
+public class PartitionMaintenanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionMaintenanceService.class);
+
+    private static final List<String> TABLES = List.of("tx", "audit_log");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssxxx");
+
+    // Every partition of a table with its upper bound (null for a DEFAULT partition)
+    private static final String PARTITIONS_SQL =
+            "SELECT c.relname, " +
+            "(regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz AS upper_bound " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = ?::regclass ORDER BY upper_bound";
+
+    private static final String RELKIND_SQL =
+            "SELECT c.relkind FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "WHERE n.nspname = 'bank' AND c.relname = ?";
+
+    // Non-unique indexes of a table (unique ones would have to include the partition key)
+    private static final String SECONDARY_INDEXES_SQL =
+            "SELECT i.relname, pg_get_indexdef(i.oid) AS definition " +
+            "FROM pg_index x JOIN pg_class i ON i.oid = x.indexrelid " +
+            "WHERE x.indrelid = ?::regclass AND NOT x.indisunique";
+
+    // Per-account net amount of one partition, added to the archived baseline
+    private static final String ARCHIVE_NET_SQL =
+            "INSERT INTO bank.tx_archived_net (account_number, amount) " +
+            "SELECT account, SUM(amount) FROM (" +
+            "SELECT to_account AS account, amount FROM bank.%1$s WHERE status = 'COMPLETED' " +
+            "UNION ALL SELECT from_account, -amount FROM bank.%1$s WHERE status = 'COMPLETED') m GROUP BY account " +
+            "ON CONFLICT (account_number) DO UPDATE SET amount = bank.tx_archived_net.amount + EXCLUDED.amount";
+
+    public enum RetentionAction { DETACH, DROP }
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate txTemplate;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final RetentionAction retentionAction;
+    private final long lockTimeoutMillis;
+
+    public PartitionMaintenanceService(JdbcTemplate jdbc,
+                                       PlatformTransactionManager txManager,
+                                       @Value("${bank.partitions.premake-months:3}") int premakeMonths,
+                                       @Value("${bank.partitions.retention-months:0}") int retentionMonths,
+                                       @Value("${bank.partitions.retention-action:drop}") String retentionAction,
+                                       @Value("${bank.partitions.lock-timeout-ms:5000}") long lockTimeoutMillis) {
+        this.jdbc = jdbc;
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.retentionAction = RetentionAction.valueOf(retentionAction.trim().toUpperCase());
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    /**
+     * Runs before the web server starts: inserts fail when their month has no partition
+     */
+    @PostConstruct
+    public void init() {
+        createPartitions();
+    }
+
+    @Scheduled(cron = "${bank.partitions.maintenance-cron:0 15 3 * * *}")
+    public void maintain() {
+        try {
+            createPartitions();
+            if (retentionMonths > 0) {
+                applyRetention();
+            }
+        } catch (DataAccessException e) {
+            logger.error("Partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Partitions of bank.<table> (name, upperBound), oldest first
+     */
+    public List<Map<String, Object>> listPartitions(String table) {
+        return jdbc.query(PARTITIONS_SQL, (rs, i) -> {
+            Map<String, Object> p = new LinkedHashMap<>();
+            p.put("name", rs.getString("relname"));
+            p.put("upperBound", rs.getObject("upper_bound", OffsetDateTime.class));
+            return p;
+        }, "bank." + table);
+    }
+
+    /**
+     * Convert legacy plain tables and create the missing monthly partitions up to
+     * premake-months ahead; one instance at a time (transaction-level advisory lock)
+     */
+    public void createPartitions() {
+        OffsetDateTime currentMonth = monthStart(OffsetDateTime.now(ZoneOffset.UTC));
+        txTemplate.executeWithoutResult(status -> {
+            // Two-key form: the single bigint key space holds the ledger's account locks
+            jdbc.queryForObject("SELECT pg_advisory_xact_lock(hashtext('bank'), hashtext('partitions'))", Object.class);
+            // CREATE TABLE ... PARTITION OF locks the parent: give up rather than queue
+            // inserts behind a long-running query, partitions are made months ahead anyway
+            jdbc.execute("SET LOCAL lock_timeout = '" + lockTimeoutMillis + "ms'");
+            for (String table : TABLES) {
+                convertLegacyTable(table);
+                OffsetDateTime next = null;
+                for (Map<String, Object> p : listPartitions(table)) {
+                    OffsetDateTime upper = (OffsetDateTime) p.get("upperBound");
+                    if (upper != null && (next == null || upper.isAfter(next))) {
+                        next = upper;
+                    }
+                }
+                if (next == null) {
+                    // Empty table: also cover last month against clock skew around the boundary
+                    next = currentMonth.minusMonths(1);
+                }
+                for (OffsetDateTime end = currentMonth.plusMonths(premakeMonths + 1); next.isBefore(end); next = next.plusMonths(1)) {
+                    String partition = table + "_p" + next.format(SUFFIX);
+                    jdbc.execute("CREATE TABLE IF NOT EXISTS bank." + partition + " PARTITION OF bank." + table +
+                            " FOR VALUES FROM ('" + next.format(BOUND) + "') TO ('" + next.plusMonths(1).format(BOUND) + "')");
+                    logger.info("Created partition bank.{}", partition);
+                }
+            }
+        });
+    }
+
+    /**
+     * Detach (and drop, depending on retention-action) the partitions whose whole range
+     * is older than retention-months; returns the affected partitions
+     */
+    public List<String> applyRetention() {
+        OffsetDateTime cutoff = monthStart(OffsetDateTime.now(ZoneOffset.UTC)).minusMonths(retentionMonths);
+        List<String> removed = new ArrayList<>();
+        for (String table : TABLES) {
+            for (Map<String, Object> p : listPartitions(table)) {
+                OffsetDateTime upper = (OffsetDateTime) p.get("upperBound");
+                if (upper == null || upper.isAfter(cutoff)) {
+                    continue;
+                }
+                String partition = (String) p.get("name");
+                try {
+                    if (table.equals("tx")) {
+                        archiveNetAmounts(partition);
+                    }
+                    // CONCURRENTLY cannot run inside a transaction block: plain auto-commit statements
+                    jdbc.execute("ALTER TABLE bank." + table + " DETACH PARTITION bank." + partition + " CONCURRENTLY");
+                    if (retentionAction == RetentionAction.DROP) {
+                        jdbc.execute("DROP TABLE bank." + partition);
+                    }
+                    removed.add(partition);
+                    logger.info("Retention: {} partition bank.{} (rows before {})",
+                            retentionAction == RetentionAction.DROP ? "dropped" : "detached", partition, upper);
+                } catch (DataAccessException e) {
+                    // e.g. another instance detached it first
+                    logger.warn("Retention of bank.{} failed: {}", partition, e.getMessage());
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Roll a bank.tx partition's net amounts into bank.tx_archived_net, once: a
+     * partition already listed (earlier attempt, other instance) is skipped
+     */
+    private void archiveNetAmounts(String partition) {
+        txTemplate.executeWithoutResult(status -> {
+            int listed = jdbc.update("INSERT INTO bank.tx_archived_partition (partition_name) VALUES (?) " +
+                    "ON CONFLICT (partition_name) DO NOTHING", partition);
+            if (listed == 1) {
+                jdbc.update(String.format(ARCHIVE_NET_SQL, partition));
+            }
+        });
+    }
+
+    public Map<String, Object> describe() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("premakeMonths", premakeMonths);
+        info.put("retentionMonths", retentionMonths);
+        info.put("retentionAction", retentionAction.name());
+        for (String table : TABLES) {
+            info.put(table, listPartitions(table));
+        }
+        return info;
+    }
+
+    /**
+     * A plain table from before partitioning becomes the first partition of the
+     * partitioned one; only its bounds are validated, no row is copied
+     */
+    private void convertLegacyTable(String table) {
+        String relkind = jdbc.queryForObject(RELKIND_SQL, String.class, table);
+        if (!"r".equals(relkind)) {
+            return;
+        }
+        String legacy = table + "_legacy";
+        OffsetDateTime maxTimestamp = jdbc.queryForObject(
+                "SELECT max(timestamp) FROM bank." + table, OffsetDateTime.class);
+        OffsetDateTime bound = monthStart(maxTimestamp != null ? maxTimestamp.withOffsetSameInstant(ZoneOffset.UTC)
+                : OffsetDateTime.now(ZoneOffset.UTC)).plusMonths(1);
+        jdbc.execute("ALTER TABLE bank." + table + " RENAME TO " + legacy);
+        jdbc.execute("CREATE TABLE bank." + table + " (LIKE bank." + legacy + " INCLUDING DEFAULTS) " +
+                "PARTITION BY RANGE (timestamp)");
+        jdbc.execute("ALTER TABLE bank." + table + " ADD PRIMARY KEY (id, timestamp)");
+        // Move the secondary indexes (schema.sql names) to the parent; ATTACH then adopts
+        // the renamed legacy copies instead of building them again
+        for (Map<String, Object> index : jdbc.queryForList(SECONDARY_INDEXES_SQL, "bank." + legacy)) {
+            String name = (String) index.get("relname");
+            String definition = ((String) index.get("definition"))
+                    .replace(" ON bank." + legacy + " ", " ON bank." + table + " ");
+            jdbc.execute("ALTER INDEX bank." + name + " RENAME TO " + name + "_legacy");
+            jdbc.execute(definition);
+        }
+        jdbc.execute("ALTER TABLE bank." + table + " ATTACH PARTITION bank." + legacy +
+                " FOR VALUES FROM (MINVALUE) TO ('" + bound.format(BOUND) + "')");
+        logger.info("Converted bank.{} to a partitioned table, existing rows kept in bank.{}", table, legacy);
+    }
+
+    private static OffsetDateTime monthStart(OffsetDateTime t) {
+        return t.withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+    }
+}
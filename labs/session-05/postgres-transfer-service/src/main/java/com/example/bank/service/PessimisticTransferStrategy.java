@@ -0,0 +1,67 @@
+package com.example.bank.service;
+
+import com.example.bank.model.Account;
+import com.example.bank.model.TransferResult;
+import com.example.bank.repository.AccountRepository;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Locks both rows with SELECT ... FOR UPDATE (lockByIds) before reading balances
+ * Rows are always locked in ascending ID order, so two opposite transfers cannot deadlock
+ */
+@Component
+public class PessimisticTransferStrategy implements TransferStrategy {
+    
+    public static final String NAME = "pessimistic";
+    
+    private final AccountRepository accountRepo;
+    private final TransferMetrics metrics;
+    private final LockTimeoutPolicy lockTimeouts;
+    
+    public PessimisticTransferStrategy(AccountRepository accountRepo, TransferMetrics metrics, LockTimeoutPolicy lockTimeouts) {
+        this.accountRepo = accountRepo;
+        this.metrics = metrics;
+        this.lockTimeouts = lockTimeouts;
+    }
+    
+    @Override
+    public String name() {
+        return NAME;
+    }
+    
+    @Override
+    public TransferResult apply(Long fromId, Long toId, BigDecimal amount) {
+        // PESSIMISTIC LOCKING: lockByIds returns the rows ordered by ID
+        long start = System.nanoTime();
+        List<Account> locked = lockTimeouts.lock(
+                () -> accountRepo.lockByIds(List.of(Math.min(fromId, toId), Math.max(fromId, toId))));
+        metrics.record(TransferMetrics.Phase.LOCK, start);
+        
+        start = System.nanoTime();
+        try {
+            return debitAndCredit(locked, fromId, toId, amount);
+        } finally {
+            metrics.record(TransferMetrics.Phase.VALIDATE, start);
+        }
+    }
+    
+    private TransferResult debitAndCredit(List<Account> locked, Long fromId, Long toId, BigDecimal amount) {
+        if (locked.size() != 2) {
+            return TransferResult.fail(TransferResult.Status.ERROR, "account not found");
+        }
+        Account from = locked.get(0).getId().equals(fromId) ? locked.get(0) : locked.get(1);
+        Account to = locked.get(0).getId().equals(toId) ? locked.get(0) : locked.get(1);
+        
+        if (from.getBalance().compareTo(amount) < 0) {
+            return TransferResult.fail(TransferResult.Status.INSUFFICIENT_FUNDS, "insufficient funds");
+        }
+        
+        // Managed entities: dirty checking flushes both updates at commit
+        from.setBalance(from.getBalance().subtract(amount));
+        to.setBalance(to.getBalance().add(amount));
+        return TransferResult.ok(null, from.getBalance(), to.getBalance());
+    }
+}
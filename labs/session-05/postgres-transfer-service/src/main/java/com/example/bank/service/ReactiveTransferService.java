@@ -0,0 +1,263 @@
+package com.example.bank.service;
+
+import com.example.bank.model.TransferResult;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.IsolationLevel;
+import io.r2dbc.spi.R2dbcException;
+import io.r2dbc.spi.Readable;
+import io.r2dbc.spi.Statement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Non-blocking transfer over R2DBC, for a small fixed number of event-loop threads
+ *
+ * Same guarantees as TransferService.transferFunds with the pessimistic strategy, in one
+ * READ COMMITTED transaction on one connection:
+ * - Both rows are locked with SELECT ... ORDER BY id FOR UPDATE, i.e. in ascending ID
+ *   order like lockByIds, so it cannot deadlock with the JDBC path
+ * - The balance is checked under the lock, then both rows are updated (version bumped
+ *   so optimistic readers notice) and the tx and audit rows are inserted before commit
+ * - A rejected transfer still commits its TRANSFER_FAILED audit record
+ * - A committed transfer also commits its TransferCompleted outbox event
+ * Split balance accounts are only debited/credited on their account row, which keeps
+ * their total exact (a debit may be rejected conservatively until the next compaction).
+ * Before locking, the transaction sets lock_timeout and statement_timeout like
+ * LockTimeoutPolicy does on the JDBC path (values of the /api/reactive/transfer
+ * endpoint); an expired lock_timeout is not retried and returns LOCK_TIMEOUT.
+ * Serialization failures and deadlocks are retried with RetryEngine's jittered backoff.
+ * Not available in ledger mode: it updates balances in place and doesn't take the
+ * ledger's advisory locks, so its funds check would ignore the ledger entries.
+ */
+@Service
+public class ReactiveTransferService {
+
+    private static final String ENDPOINT = "/api/reactive/transfer";
+
+    private static final String TIMEOUTS_SQL =
+            "SELECT set_config('lock_timeout', $1, true), set_config('statement_timeout', $2, true)";
+    private static final String LOCK_SQL =
+            "SELECT id, account_number, balance FROM bank.account WHERE account_number IN ($1, $2) ORDER BY id FOR UPDATE";
+    private static final String DEBIT_SQL =
+            "UPDATE bank.account SET balance = balance - $1, version = version + 1 WHERE id = $2 RETURNING balance";
+    private static final String CREDIT_SQL =
+            "UPDATE bank.account SET balance = balance + $1, version = version + 1 WHERE id = $2 RETURNING balance";
+    private static final String TX_SQL =
+            "INSERT INTO bank.tx (id, from_account, to_account, amount, timestamp, status) " +
+            "VALUES (nextval('bank.tx_seq'), $1, $2, $3, $4, 'COMPLETED') RETURNING id";
+    // Same id scheme as AuditLogWriter: a raw nextval never collides with Hibernate's blocks
+    private static final String AUDIT_SQL =
+            "INSERT INTO bank.audit_log (id, action, details, timestamp) VALUES (nextval('bank.audit_log_seq'), $1, $2, $3)";
+
+    private static final String OUTBOX_SQL =
+            "INSERT INTO bank.outbox (event_type, aggregate_id, payload) VALUES ($1, $2, $3::jsonb)";
+
+    private static final Function<Readable, BigDecimal> BALANCE = row -> row.get("balance", BigDecimal.class);
+
+    private final ConnectionFactory connectionFactory;
+    private final RetryEngine retryEngine;
+    private final OutboxWriter outbox;
+    private final TransferMetrics metrics;
+    private final long lockMillis;
+    private final long statementMillis;
+    private final int maxRetries;
+    private final boolean ledgerMode;
+
+    public ReactiveTransferService(ConnectionFactory connectionFactory,
+                                   RetryEngine retryEngine,
+                                   OutboxWriter outbox,
+                                   LockTimeoutPolicy lockTimeouts,
+                                   TransferMetrics metrics,
+                                   @Value("${bank.reactive.max-retries:3}") int maxRetries,
+                                   @Value("${bank.transfer.strategy:pessimistic}") String strategyName) {
+        this.connectionFactory = connectionFactory;
+        this.retryEngine = retryEngine;
+        this.outbox = outbox;
+        this.metrics = metrics;
+        this.lockMillis = lockTimeouts.lockMillis(ENDPOINT);
+        this.statementMillis = lockTimeouts.statementMillis(ENDPOINT);
+        this.maxRetries = maxRetries;
+        this.ledgerMode = LedgerTransferStrategy.NAME.equals(strategyName);
+    }
+
+    public Mono<TransferResult> transfer(String fromAccountNum, String toAccountNum, BigDecimal amount) {
+        Objects.requireNonNull(fromAccountNum);
+        Objects.requireNonNull(toAccountNum);
+        Objects.requireNonNull(amount);
+        if (amount.signum() <= 0) {
+            return Mono.error(new IllegalArgumentException("amount must be positive"));
+        }
+        if (fromAccountNum.equals(toAccountNum)) {
+            return Mono.error(new IllegalArgumentException("source and destination are the same account"));
+        }
+        if (ledgerMode) {
+            return Mono.just(TransferResult.fail(TransferResult.Status.ERROR, "reactive transfers are not available in ledger mode"));
+        }
+        return Mono.defer(() -> inTransaction(conn -> transferFunds(conn, fromAccountNum, toAccountNum, amount)))
+                .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                    RetryEngine.Reason reason = classify(signal.failure());
+                    if (reason == null || signal.totalRetries() >= maxRetries) {
+                        return Mono.error(signal.failure());
+                    }
+                    retryEngine.recordConflict(reason, fromAccountNum, toAccountNum);
+                    return Mono.delay(Duration.ofMillis(retryEngine.backoffMillis((int) signal.totalRetries())));
+                })))
+                .onErrorResume(e -> classify(e) != null,
+                        e -> Mono.just(TransferResult.fail(TransferResult.Status.CONFLICT_RETRY,
+                                classify(e).name().toLowerCase() + " after " + (maxRetries + 1) + " attempts")))
+                .onErrorResume(LockTimeoutPolicy::isLockTimeout,
+                        e -> Mono.just(TransferResult.fail(TransferResult.Status.LOCK_TIMEOUT, "timed out waiting for account locks")))
+                .onErrorResume(R2dbcException.class,
+                        e -> Mono.just(TransferResult.fail(TransferResult.Status.ERROR, "db error: " + e.getMessage())));
+    }
+
+    private Mono<TransferResult> transferFunds(Connection conn, String fromAccountNum, String toAccountNum, BigDecimal amount) {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        Statement lock = conn.createStatement(LOCK_SQL).bind("$1", fromAccountNum).bind("$2", toAccountNum);
+        return setTimeouts(conn)
+                .then(Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return rows(lock, row -> new LockedAccount(
+                                    row.get("id", Long.class), row.get("account_number", String.class), row.get("balance", BigDecimal.class)))
+                            .collectList()
+                            .doOnError(e -> {
+                                if (LockTimeoutPolicy.isLockTimeout(e)) {
+                                    metrics.recordLockTimeout(start);
+                                }
+                            });
+                }))
+                .flatMap(locked -> {
+                    LockedAccount from = find(locked, fromAccountNum);
+                    LockedAccount to = find(locked, toAccountNum);
+                    TransferResult rejected = null;
+                    if (from == null || to == null) {
+                        String missing = from == null ? fromAccountNum : toAccountNum;
+                        rejected = TransferResult.fail(TransferResult.Status.ERROR, "account not found: " + missing);
+                    } else if (from.balance.compareTo(amount) < 0) {
+                        rejected = TransferResult.fail(TransferResult.Status.INSUFFICIENT_FUNDS, "insufficient funds");
+                    }
+                    if (rejected != null) {
+                        return audit(conn, "TRANSFER_FAILED", "from=" + fromAccountNum + " to=" + toAccountNum +
+                                " amount=" + amount + " reason=" + rejected.getMessage(), now)
+                                .thenReturn(rejected);
+                    }
+                    // Statements one after the other: the next is only sent once the previous completed
+                    return single(conn.createStatement(DEBIT_SQL).bind("$1", amount).bind("$2", from.id), BALANCE)
+                            .flatMap(fromBalance -> single(conn.createStatement(CREDIT_SQL).bind("$1", amount).bind("$2", to.id), BALANCE)
+                            .flatMap(toBalance -> single(conn.createStatement(TX_SQL)
+                                            .bind("$1", fromAccountNum).bind("$2", toAccountNum).bind("$3", amount).bind("$4", now),
+                                    row -> row.get("id", Long.class))
+                            .flatMap(txId -> audit(conn, "TRANSFER_OK", "from=" + fromAccountNum + " to=" + toAccountNum +
+                                            " amount=" + amount + " strategy=reactive", now)
+                                    .then(transferCompleted(conn, txId, fromAccountNum, toAccountNum, amount, now))
+                                    .thenReturn(TransferResult.ok(txId, fromBalance, toBalance)))));
+                });
+    }
+
+    /**
+     * Runs the work in a READ COMMITTED transaction: committed when the work completes,
+     * rolled back on error or cancellation; the connection always goes back to the pool
+     */
+    private <T> Mono<T> inTransaction(Function<Connection, Mono<T>> work) {
+        return Mono.usingWhen(connectionFactory.create(),
+                conn -> Mono.from(conn.beginTransaction(IsolationLevel.READ_COMMITTED))
+                        .then(Mono.defer(() -> work.apply(conn)))
+                        .flatMap(result -> Mono.from(conn.commitTransaction()).thenReturn(result)),
+                Connection::close,
+                (conn, error) -> Mono.from(conn.rollbackTransaction()).onErrorResume(e -> Mono.empty())
+                        .then(Mono.from(conn.close())),
+                conn -> Mono.from(conn.rollbackTransaction()).onErrorResume(e -> Mono.empty())
+                        .then(Mono.from(conn.close())));
+    }
+
+    /**
+     * SET LOCAL lock_timeout / statement_timeout, in force until the transaction ends
+     */
+    private Mono<Void> setTimeouts(Connection conn) {
+        if (lockMillis <= 0 && statementMillis <= 0) {
+            return Mono.empty();
+        }
+        Statement set = conn.createStatement(TIMEOUTS_SQL)
+                .bind("$1", String.valueOf(lockMillis))
+                .bind("$2", String.valueOf(statementMillis));
+        return rows(set, row -> Boolean.TRUE).then();
+    }
+
+    private Mono<Void> audit(Connection conn, String action, String details, OffsetDateTime timestamp) {
+        Statement insert = conn.createStatement(AUDIT_SQL).bind("$1", action).bind("$2", details).bind("$3", timestamp);
+        return Flux.from(insert.execute()).flatMap(result -> result.getRowsUpdated()).then();
+    }
+
+    /**
+     * Outbox event in the same transaction, like OutboxWriter on the JDBC path
+     */
+    private Mono<Void> transferCompleted(Connection conn, Long txId, String from, String to,
+                                         BigDecimal amount, OffsetDateTime timestamp) {
+        if (!outbox.isEnabled()) {
+            return Mono.empty();
+        }
+        Statement insert = conn.createStatement(OUTBOX_SQL)
+                .bind("$1", OutboxWriter.TRANSFER_COMPLETED)
+                .bind("$2", txId)
+                .bind("$3", outbox.transferPayload(txId, from, to, amount, timestamp));
+        return Flux.from(insert.execute()).flatMap(result -> result.getRowsUpdated()).then();
+    }
+
+    private static <T> Flux<T> rows(Statement statement, Function<Readable, T> mapper) {
+        return Flux.from(statement.execute()).flatMap(result -> result.map(mapper));
+    }
+
+    private static <T> Mono<T> single(Statement statement, Function<Readable, T> mapper) {
+        return rows(statement, mapper).single();
+    }
+
+    private static LockedAccount find(List<LockedAccount> locked, String accountNumber) {
+        for (LockedAccount a : locked) {
+            if (a.number.equals(accountNumber)) {
+                return a;
+            }
+        }
+        return null;
+    }
+
+    private static RetryEngine.Reason classify(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof R2dbcException r2dbc) {
+                if ("40001".equals(r2dbc.getSqlState())) {
+                    return RetryEngine.Reason.SERIALIZATION_FAILURE;
+                }
+                if ("40P01".equals(r2dbc.getSqlState())) {
+                    return RetryEngine.Reason.DEADLOCK;
+                }
+            }
+            if (t == t.getCause()) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static final class LockedAccount {
+        final long id;
+        final String number;
+        final BigDecimal balance;
+
+        LockedAccount(long id, String number, BigDecimal balance) {
+            this.id = id;
+            this.number = number;
+            this.balance = balance;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.bank.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks every account's balance against its transaction history
+ *
+ * expected = opening_balance + credits - debits (COMPLETED rows of bank.tx)
+ *            + net amount of the partitions removed by retention (bank.tx_archived_net)
+ * actual   = balance + balance shards + ledger entries
+ * The account ID space is cut into ranges of range-size IDs, processed in parallel by
+ * a fork-join pool of `parallelism` workers. Each range is one short READ ONLY,
+ * REPEATABLE READ transaction: balances and history come from the same snapshot (a
+ * transfer updates both atomically), plain reads never block transfers, and no
+ * snapshot is held for the whole run, which would hold back vacuum.
+ * Workers use their own small pool (one connection each), not the application's.
+ */
+@Service
+public class ReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReconciliationService.class);
+
+    // Accounts of the range whose balance disagrees with their history
+    private static final String MISMATCH_SQL =
+            "WITH a AS (SELECT id, account_number, balance, opening_balance FROM bank.account " +
+            "           WHERE id >= ? AND id < ? AND opening_balance IS NOT NULL), " +
+            // Partitions already rolled into tx_archived_net (possibly still attached)
+            "archived AS (SELECT to_regclass('bank.' || partition_name)::oid AS rel FROM bank.tx_archived_partition " +
+            "             WHERE to_regclass('bank.' || partition_name) IS NOT NULL), " +
+            "history AS (SELECT id, SUM(amount) AS amount FROM (" +
+            "    SELECT a.id, t.amount FROM a JOIN bank.tx t ON t.to_account = a.account_number " +
+            "    WHERE t.status = 'COMPLETED' AND t.tableoid NOT IN (SELECT rel FROM archived) " +
+            "    UNION ALL " +
+            "    SELECT a.id, -t.amount FROM a JOIN bank.tx t ON t.from_account = a.account_number " +
+            "    WHERE t.status = 'COMPLETED' AND t.tableoid NOT IN (SELECT rel FROM archived) " +
+            "    UNION ALL " +
+            "    SELECT a.id, n.amount FROM a JOIN bank.tx_archived_net n ON n.account_number = a.account_number" +
+            "  ) m GROUP BY id), " +
+            "shards AS (SELECT account_id AS id, SUM(balance) AS amount FROM bank.account_balance_shard " +
+            "           WHERE account_id >= ? AND account_id < ? GROUP BY account_id), " +
+            "ledger AS (SELECT account_id AS id, SUM(amount) AS amount FROM bank.ledger_entry " +
+            "           WHERE account_id >= ? AND account_id < ? GROUP BY account_id), " +
+            "r AS (SELECT a.id, a.account_number, " +
+            "             a.balance + COALESCE(shards.amount, 0) + COALESCE(ledger.amount, 0) AS actual, " +
+            "             a.opening_balance + COALESCE(history.amount, 0) AS expected " +
+            "      FROM a LEFT JOIN history USING (id) LEFT JOIN shards USING (id) LEFT JOIN ledger USING (id)) " +
+            "SELECT id, account_number, actual, expected FROM r WHERE actual <> expected ORDER BY id";
+
+    // Counts and totals of the range, in the same snapshot
+    private static final String TOTALS_SQL =
+            "SELECT count(*) AS accounts, count(*) FILTER (WHERE opening_balance IS NULL) AS unverified, " +
+            "COALESCE(SUM(balance), 0) " +
+            "+ COALESCE((SELECT SUM(balance) FROM bank.account_balance_shard WHERE account_id >= ? AND account_id < ?), 0) " +
+            "+ COALESCE((SELECT SUM(amount) FROM bank.ledger_entry WHERE account_id >= ? AND account_id < ?), 0) AS money, " +
+            "COALESCE(SUM(opening_balance), 0) AS opening " +
+            "FROM bank.account WHERE id >= ? AND id < ?";
+
+    private final JdbcTemplate jdbc;
+    private final DataSourceProperties dataSourceProperties;
+    private final int parallelism;
+    private final long rangeSize;
+    private final int maxReported;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong rangesDone = new AtomicLong();
+    private volatile long rangesTotal;
+    private volatile Map<String, Object> lastReport;
+
+    public ReconciliationService(JdbcTemplate jdbc,
+                                 DataSourceProperties dataSourceProperties,
+                                 @Value("${bank.reconciliation.parallelism:8}") int parallelism,
+                                 @Value("${bank.reconciliation.range-size:100000}") long rangeSize,
+                                 @Value("${bank.reconciliation.max-reported:1000}") int maxReported) {
+        if (parallelism < 1 || rangeSize < 1) {
+            throw new IllegalArgumentException("invalid reconciliation configuration");
+        }
+        this.jdbc = jdbc;
+        this.dataSourceProperties = dataSourceProperties;
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+        this.maxReported = maxReported;
+    }
+
+    /**
+     * Optional schedule (bank.reconciliation.cron, disabled with "-")
+     */
+    @Scheduled(cron = "${bank.reconciliation.cron:-}")
+    public void scheduled() {
+        start();
+    }
+
+    /**
+     * Start a run in the background; false when one is already running
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            Long[] bounds = jdbc.queryForObject("SELECT min(id), max(id) FROM bank.account",
+                    (rs, i) -> new Long[] { (Long) rs.getObject(1), (Long) rs.getObject(2) });
+            long lo = bounds[0] == null ? 0 : bounds[0];
+            long hi = bounds[1] == null ? 0 : bounds[1] + 1;
+            rangesDone.set(0);
+            rangesTotal = (hi - lo + rangeSize - 1) / rangeSize;
+
+            HikariDataSource dataSource = workerDataSource();
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            OffsetDateTime startedAt = OffsetDateTime.now(ZoneOffset.UTC);
+            long start = System.nanoTime();
+            Thread runner = new Thread(() -> {
+                Map<String, Object> report = new LinkedHashMap<>();
+                report.put("startedAt", startedAt);
+                try {
+                    RangeResult result = pool.invoke(new RangeTask(new Worker(dataSource), lo, hi));
+                    long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+                    report.put("status", "COMPLETED");
+                    report.putAll(result.toMap());
+                    report.put("ranges", rangesTotal);
+                    report.put("elapsedMs", elapsedMs);
+                    report.put("accountsPerSec", elapsedMs == 0 ? result.accounts : result.accounts * 1000 / elapsedMs);
+                    logger.info("Reconciliation of {} accounts finished in {} ms: {} mismatches, {} unverified",
+                            result.accounts, elapsedMs, result.mismatchCount, result.unverified);
+                } catch (RuntimeException e) {
+                    report.put("status", "FAILED");
+                    report.put("error", e.getMessage());
+                    logger.error("Reconciliation failed", e);
+                } finally {
+                    pool.shutdown();
+                    dataSource.close();
+                    report.put("finishedAt", OffsetDateTime.now(ZoneOffset.UTC));
+                    lastReport = report;
+                    running.set(false);
+                }
+            }, "reconciliation");
+            runner.setDaemon(true);
+            runner.start();
+            return true;
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Progress of the current run and the report of the last finished one
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("parallelism", parallelism);
+        status.put("rangeSize", rangeSize);
+        if (running.get()) {
+            status.put("rangesDone", rangesDone.get());
+            status.put("rangesTotal", rangesTotal);
+        }
+        status.put("lastReport", lastReport);
+        return status;
+    }
+
+    private HikariDataSource workerDataSource() {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("reconciliation");
+        dataSource.setMaximumPoolSize(parallelism);
+        dataSource.setMinimumIdle(0);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    /**
+     * One range per transaction, on the worker pool
+     */
+    private final class Worker {
+        private final JdbcTemplate jdbc;
+        private final TransactionTemplate txTemplate;
+
+        Worker(HikariDataSource dataSource) {
+            this.jdbc = new JdbcTemplate(dataSource);
+            this.txTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            this.txTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+            this.txTemplate.setReadOnly(true);
+        }
+
+        RangeResult check(long lo, long hi) {
+            RangeResult result = txTemplate.execute(status -> {
+                RangeResult r = jdbc.queryForObject(TOTALS_SQL, (rs, i) -> new RangeResult(
+                        rs.getLong("accounts"), rs.getLong("unverified"), rs.getBigDecimal("money"), rs.getBigDecimal("opening")),
+                        lo, hi, lo, hi, lo, hi);
+                if (r.accounts == r.unverified) {
+                    return r;
+                }
+                jdbc.query(MISMATCH_SQL, rs -> {
+                    r.mismatchCount++;
+                    if (r.mismatches.size() < maxReported) {
+                        Map<String, Object> m = new LinkedHashMap<>();
+                        m.put("accountId", rs.getLong("id"));
+                        m.put("accountNumber", rs.getString("account_number"));
+                        m.put("balance", rs.getBigDecimal("actual"));
+                        m.put("expected", rs.getBigDecimal("expected"));
+                        r.mismatches.add(m);
+                    }
+                }, lo, hi, lo, hi, lo, hi);
+                return r;
+            });
+            rangesDone.incrementAndGet();
+            return result;
+        }
+    }
+
+    /**
+     * [lo, hi) split in halves until a range is at most range-size IDs wide
+     */
+    private final class RangeTask extends RecursiveTask<RangeResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final Worker worker;
+        private final long lo;
+        private final long hi;
+
+        RangeTask(Worker worker, long lo, long hi) {
+            this.worker = worker;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected RangeResult compute() {
+            if (hi - lo <= rangeSize) {
+                return worker.check(lo, hi);
+            }
+            // Split on a multiple of range-size so leaves line up with rangesTotal
+            long leaves = (hi - lo + rangeSize - 1) / rangeSize;
+            long mid = lo + (leaves / 2) * rangeSize;
+            RangeTask left = new RangeTask(worker, lo, mid);
+            RangeTask right = new RangeTask(worker, mid, hi);
+            left.fork();
+            RangeResult r = right.compute();
+            return left.join().merge(r, maxReported);
+        }
+    }
+
+    private static final class RangeResult {
+        long accounts;
+        long unverified;
+        BigDecimal money;
+        BigDecimal opening;
+        long mismatchCount;
+        final List<Map<String, Object>> mismatches = new ArrayList<>();
+
+        RangeResult(long accounts, long unverified, BigDecimal money, BigDecimal opening) {
+            this.accounts = accounts;
+            this.unverified = unverified;
+            this.money = money;
+            this.opening = opening;
+        }
+
+        RangeResult merge(RangeResult other, int maxReported) {
+            accounts += other.accounts;
+            unverified += other.unverified;
+            money = money.add(other.money);
+            opening = opening.add(other.opening);
+            mismatchCount += other.mismatchCount;
+            for (Map<String, Object> m : other.mismatches) {
+                if (mismatches.size() >= maxReported) {
+                    break;
+                }
+                mismatches.add(m);
+            }
+            return this;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("accounts", accounts);
+            map.put("unverified", unverified);
+            map.put("totalMoney", money);
+            map.put("totalOpening", opening);
+            map.put("mismatchCount", mismatchCount);
+            map.put("mismatches", mismatches);
+            return map;
+        }
+    }
+}
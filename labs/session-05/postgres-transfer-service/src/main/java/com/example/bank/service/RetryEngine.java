@@ -0,0 +1,152 @@
+package com.example.bank.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a failed transfer attempt is worth retrying and how long to wait
+ *
+ * - Retryable failures: SQLState 40001 (serialization failure), 40P01 (deadlock),
+ *   OptimisticLockingFailureException and other transient DataAccessExceptions
+ * - Never retried: 55P03 (lock_timeout) and 57014 (statement_timeout); waiting again
+ *   behind the same blocker would defeat the point of failing fast
+ * - Backoff: exponential with full jitter, random(0, min(maxDelay, baseDelay * 2^attempt)),
+ *   so conflicting transactions don't wake up and collide again at the same instant
+ * - Metrics: retries per reason and conflict rate per account
+ */
+@Component
+public class RetryEngine {
+
+    public enum Reason { SERIALIZATION_FAILURE, DEADLOCK, OPTIMISTIC_CONFLICT, TRANSIENT }
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int maxTrackedAccounts;
+
+    private final Map<Reason, LongAdder> retries = new EnumMap<>(Reason.class);
+    private final ConcurrentMap<String, AccountStats> accounts = new ConcurrentHashMap<>();
+
+    public RetryEngine(@Value("${bank.transfer.retry.base-delay-ms:5}") long baseDelayMillis,
+                       @Value("${bank.transfer.retry.max-delay-ms:200}") long maxDelayMillis,
+                       @Value("${bank.transfer.retry.max-tracked-accounts:10000}") int maxTrackedAccounts) {
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxTrackedAccounts = maxTrackedAccounts;
+        for (Reason r : Reason.values()) {
+            retries.put(r, new LongAdder());
+        }
+    }
+
+    /**
+     * Reason to retry the failure, or null when retrying cannot help
+     */
+    public Reason classify(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                if ("40001".equals(sql.getSQLState())) {
+                    return Reason.SERIALIZATION_FAILURE;
+                }
+                if ("40P01".equals(sql.getSQLState())) {
+                    return Reason.DEADLOCK;
+                }
+                if ("55P03".equals(sql.getSQLState()) || "57014".equals(sql.getSQLState())) {
+                    return null;
+                }
+            }
+            if (t == t.getCause()) {
+                break;
+            }
+        }
+        if (e instanceof OptimisticLockingFailureException) {
+            return Reason.OPTIMISTIC_CONFLICT;
+        }
+        if (e instanceof TransientDataAccessException) {
+            return Reason.TRANSIENT;
+        }
+        return null;
+    }
+
+    /**
+     * Full-jitter pause before the given retry (0 = first retry)
+     */
+    public long backoffMillis(int retry) {
+        long ceiling = baseDelayMillis << Math.min(retry, 20);
+        ceiling = Math.min(maxDelayMillis, ceiling);
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Count one attempt on each account
+     */
+    public void recordAttempt(String... accountNumbers) {
+        for (String n : accountNumbers) {
+            stats(n).attempts.increment();
+        }
+    }
+
+    /**
+     * Count a retryable failure, globally by reason and on each account
+     */
+    public void recordConflict(Reason reason, String... accountNumbers) {
+        retries.get(reason).increment();
+        for (String n : accountNumbers) {
+            stats(n).conflicts.increment();
+        }
+    }
+
+    public Map<String, Long> getRetryCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<Reason, LongAdder> e : retries.entrySet()) {
+            counts.put(e.getKey().name(), e.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Accounts with the most conflicts, with their conflict rate (conflicts / attempts)
+     */
+    public List<Map<String, Object>> getMostConflictedAccounts(int limit) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        accounts.entrySet().stream()
+                .filter(e -> e.getValue().conflicts.sum() > 0)
+                .sorted((a, b) -> Long.compare(b.getValue().conflicts.sum(), a.getValue().conflicts.sum()))
+                .limit(limit)
+                .forEach(e -> {
+                    long attempts = e.getValue().attempts.sum();
+                    long conflicts = e.getValue().conflicts.sum();
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("accountNumber", e.getKey());
+                    row.put("attempts", attempts);
+                    row.put("conflicts", conflicts);
+                    row.put("conflictRate", attempts == 0 ? 0.0 : (double) conflicts / attempts);
+                    result.add(row);
+                });
+        return result;
+    }
+
+    private AccountStats stats(String accountNumber) {
+        AccountStats s = accounts.get(accountNumber);
+        if (s != null) {
+            return s;
+        }
+        // Bounded tracking: start a new window instead of growing without limit
+        if (accounts.size() >= maxTrackedAccounts) {
+            accounts.clear();
+        }
+        return accounts.computeIfAbsent(accountNumber, k -> new AccountStats());
+    }
+
+    private static final class AccountStats {
+        final LongAdder attempts = new LongAdder();
+        final LongAdder conflicts = new LongAdder();
+    }
+}
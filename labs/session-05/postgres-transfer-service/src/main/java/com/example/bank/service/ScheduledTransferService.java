@@ -0,0 +1,429 @@
+package com.example.bank.service;
+
+import com.example.bank.model.TransferRequest;
+import com.example.bank.model.TransferResult;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.Period;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Future-dated and recurring transfers (bank.scheduled_transfer)
+ *
+ * - Every load-interval-ms the distinct due seconds of the next horizon-ms are loaded
+ *   into a hierarchical TimingWheel; new schedules of this instance are added directly.
+ *   Between loads the database is not polled: the wheel ticks in memory and only an
+ *   expired instant starts a drain.
+ * - A drain runs up to `workers` threads, each claiming batch-size due rows with
+ *   FOR UPDATE SKIP LOCKED until a claim comes back short. Other instances drain the
+ *   same due rows in parallel without ever claiming the same one.
+ * - A claimed batch goes through TransferService.transferBatch in the claim transaction
+ *   (every account locked once, in ID order, exactly like a batch transfer), and the
+ *   rows are advanced in the same transaction: a transfer and the state of its
+ *   schedule commit together, so nothing runs twice or gets lost on a crash.
+ * A one-off transfer ends DONE or FAILED; a recurring one moves to its next
+ * occurrence either way, with the outcome in last_status / last_message.
+ * If a batch fails as a whole (deadlock, lock timeout...), its rows are re-run one
+ * by one, each in its own transaction; a row that fails alone is postponed by
+ * retry-delay-ms with last_status ERROR, so one bad row never blocks the queue.
+ * The wheel ticks on its own thread, not on the shared @Scheduled pool.
+ */
+@Service
+public class ScheduledTransferService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledTransferService.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO bank.scheduled_transfer (from_account, to_account, amount, first_due_at, due_at, recurrence, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 'PENDING') RETURNING id";
+    // Served by the partial index ix_scheduled_transfer_due
+    private static final String CLAIM_SQL =
+            "SELECT id, from_account, to_account, amount, first_due_at, recurrence, occurrence " +
+            "FROM bank.scheduled_transfer WHERE status = 'PENDING' AND due_at <= now() " +
+            "ORDER BY due_at LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String CLAIM_ONE_SQL =
+            "SELECT id, from_account, to_account, amount, first_due_at, recurrence, occurrence " +
+            "FROM bank.scheduled_transfer WHERE id = ? AND status = 'PENDING' AND due_at <= now() FOR UPDATE SKIP LOCKED";
+    private static final String POSTPONE_SQL =
+            "UPDATE bank.scheduled_transfer SET due_at = ?, last_status = 'ERROR', last_message = ?, updated_at = now() " +
+            "WHERE id = ? AND status = 'PENDING'";
+    private static final String ADVANCE_SQL =
+            "UPDATE bank.scheduled_transfer SET status = ?, due_at = COALESCE(?::timestamptz, due_at), occurrence = ?, last_status = ?, " +
+            "last_message = ?, last_tx_id = ?, updated_at = now() WHERE id = ?";
+    // Rounded up to the second, so an instant never expires before its rows are due
+    private static final String DUE_SECONDS_SQL =
+            "SELECT DISTINCT ceil(extract(epoch FROM due_at))::bigint AS due_second FROM bank.scheduled_transfer " +
+            "WHERE status = 'PENDING' AND due_at < ? ORDER BY due_second LIMIT ?";
+    private static final String CANCEL_SQL =
+            "UPDATE bank.scheduled_transfer SET status = 'CANCELLED', updated_at = now() WHERE id = ? AND status = 'PENDING'";
+    private static final String FIND_SQL =
+            "SELECT id, from_account, to_account, amount, first_due_at, due_at, recurrence, occurrence, status, " +
+            "last_status, last_message, last_tx_id FROM bank.scheduled_transfer WHERE id = ?";
+
+    private static final RowMapper<Claimed> CLAIMED = (rs, i) -> new Claimed(
+            rs.getLong("id"), rs.getString("from_account"), rs.getString("to_account"), rs.getBigDecimal("amount"),
+            rs.getObject("first_due_at", OffsetDateTime.class), rs.getString("recurrence"), rs.getInt("occurrence"));
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate txTemplate;
+    private final TransferService transfers;
+    private final boolean enabled;
+    private final int workers;
+    private final int batchSize;
+    private final long horizonMillis;
+    private final long tickMillis;
+    private final long retryDelayMillis;
+    private final int maxWheelInstants;
+    private final TimingWheel wheel;
+    private final ExecutorService drainers;
+    private final ScheduledExecutorService ticker;
+    private final AtomicInteger activeDrainers = new AtomicInteger();
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+
+    // Metrics
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batchFailures = new AtomicLong();
+    private final AtomicLong postponed = new AtomicLong();
+    private final AtomicLong drains = new AtomicLong();
+
+    public ScheduledTransferService(JdbcTemplate jdbc,
+                                    PlatformTransactionManager txManager,
+                                    TransferService transfers,
+                                    @Value("${bank.scheduler.enabled:true}") boolean enabled,
+                                    @Value("${bank.scheduler.workers:4}") int workers,
+                                    @Value("${bank.scheduler.batch-size:200}") int batchSize,
+                                    @Value("${bank.scheduler.tick-ms:1000}") long tickMillis,
+                                    @Value("${bank.scheduler.horizon-ms:600000}") long horizonMillis,
+                                    @Value("${bank.scheduler.retry-delay-ms:60000}") long retryDelayMillis,
+                                    @Value("${bank.scheduler.max-wheel-instants:100000}") int maxWheelInstants) {
+        if (workers < 1 || batchSize < 1 || horizonMillis < tickMillis) {
+            throw new IllegalArgumentException("invalid scheduler configuration");
+        }
+        this.jdbc = jdbc;
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.txTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.transfers = transfers;
+        this.enabled = enabled;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.horizonMillis = horizonMillis;
+        this.tickMillis = tickMillis;
+        this.retryDelayMillis = retryDelayMillis;
+        this.maxWheelInstants = maxWheelInstants;
+        // 60 ticks per level: with 1s ticks the levels cover a minute, an hour, 60 hours...
+        this.wheel = new TimingWheel(tickMillis, 60, System.currentTimeMillis());
+        this.drainers = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "scheduled-transfer-drainer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "scheduled-transfer-tick");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        drainers.shutdownNow();
+    }
+
+    /**
+     * Store a transfer due at dueAt, repeated every `recurrence` (ISO-8601 period such
+     * as P1M) when not null; returns its id
+     */
+    public long schedule(String from, String to, BigDecimal amount, OffsetDateTime dueAt, String recurrence) {
+        Objects.requireNonNull(from);
+        Objects.requireNonNull(to);
+        Objects.requireNonNull(amount);
+        Objects.requireNonNull(dueAt);
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("amount must be positive");
+        }
+        if (from.equals(to)) {
+            throw new IllegalArgumentException("source and destination are the same account");
+        }
+        if (recurrence != null) {
+            parseRecurrence(recurrence);
+        }
+        Long id = jdbc.queryForObject(INSERT_SQL, Long.class, from, to, amount, dueAt, dueAt, recurrence);
+        long due = ceilToSecond(dueAt.toInstant().toEpochMilli());
+        if (due < System.currentTimeMillis() + horizonMillis) {
+            schedule(due);
+        }
+        return id;
+    }
+
+    public boolean cancel(long id) {
+        return jdbc.update(CANCEL_SQL, id) == 1;
+    }
+
+    public Optional<Map<String, Object>> find(long id) {
+        List<Map<String, Object>> rows = jdbc.queryForList(FIND_SQL, id);
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    /**
+     * Load the due instants of the next horizon into the wheel (also at startup, which
+     * catches up on anything that fell due while no instance was running)
+     */
+    @Scheduled(fixedDelayString = "${bank.scheduler.load-interval-ms:300000}")
+    public void loadHorizon() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            OffsetDateTime until = OffsetDateTime.now(ZoneOffset.UTC).plusNanos(horizonMillis * 1_000_000);
+            int room = Math.max(0, maxWheelInstants - wheel.size());
+            for (Long second : jdbc.queryForList(DUE_SECONDS_SQL, Long.class, until, room)) {
+                schedule(second * 1000);
+            }
+        } catch (DataAccessException e) {
+            logger.error("Loading scheduled transfers failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * In-memory clock: no database access unless an instant expired
+     */
+    public void tick() {
+        try {
+            if (enabled && !wheel.advance(System.currentTimeMillis()).isEmpty()) {
+                requestDrain();
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the periodic task
+            logger.error("Scheduled transfer tick failed: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", enabled);
+        snapshot.put("wheelInstants", wheel.size());
+        snapshot.put("activeDrainers", activeDrainers.get());
+        snapshot.put("drains", drains.get());
+        snapshot.put("batches", batches.get());
+        snapshot.put("executed", executed.get());
+        snapshot.put("rejected", rejected.get());
+        snapshot.put("batchFailures", batchFailures.get());
+        snapshot.put("postponed", postponed.get());
+        return snapshot;
+    }
+
+    private void schedule(long dueMillis) {
+        if (!wheel.add(dueMillis)) {
+            requestDrain();
+        }
+    }
+
+    /**
+     * Make sure `workers` drainers run; a drainer that is about to stop sees the request
+     */
+    private void requestDrain() {
+        drainRequested.set(true);
+        for (int n = activeDrainers.get(); n < workers; n = activeDrainers.get()) {
+            if (activeDrainers.compareAndSet(n, n + 1)) {
+                drains.incrementAndGet();
+                drainers.execute(this::drain);
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            drainRequested.set(false);
+            while (processBatch() == batchSize) {
+                // Full batch: there may be more due rows
+            }
+            if (drainRequested.get()) {
+                continue;
+            }
+            activeDrainers.decrementAndGet();
+            // A request that saw every drainer busy just before the decrement: take it on
+            if (!drainRequested.get() || !rejoin()) {
+                return;
+            }
+        }
+    }
+
+    private boolean rejoin() {
+        for (int n = activeDrainers.get(); n < workers; n = activeDrainers.get()) {
+            if (activeDrainers.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Claim, execute and advance one batch in one transaction; returns the number of
+     * claimed rows. When the batch fails as a whole, its rows are re-run one by one.
+     */
+    private int processBatch() {
+        List<Claimed> claimed = new ArrayList<>();
+        try {
+            txTemplate.executeWithoutResult(status -> {
+                claimed.addAll(jdbc.query(CLAIM_SQL, CLAIMED, batchSize));
+                if (!claimed.isEmpty()) {
+                    execute(claimed);
+                }
+            });
+            if (!claimed.isEmpty()) {
+                batches.incrementAndGet();
+            }
+        } catch (DataAccessException e) {
+            // Rolled back: isolate the row(s) that made the batch fail
+            batchFailures.incrementAndGet();
+            logger.warn("Scheduled transfer batch of {} failed, running them one by one: {}", claimed.size(), e.getMessage());
+            for (Claimed c : claimed) {
+                processOne(c.id);
+            }
+        }
+        return claimed.size();
+    }
+
+    /**
+     * Claim (unless another drainer or instance has it), execute and advance one row;
+     * if that fails too, postpone it by retry-delay-ms
+     */
+    private void processOne(long id) {
+        try {
+            txTemplate.executeWithoutResult(status -> {
+                List<Claimed> one = jdbc.query(CLAIM_ONE_SQL, CLAIMED, id);
+                if (!one.isEmpty()) {
+                    execute(one);
+                }
+            });
+        } catch (DataAccessException e) {
+            long retryAt = ceilToSecond(System.currentTimeMillis() + retryDelayMillis);
+            String message = e.getMessage() == null ? "batch failed" : e.getMessage();
+            try {
+                jdbc.update(POSTPONE_SQL, OffsetDateTime.ofInstant(Instant.ofEpochMilli(retryAt), ZoneOffset.UTC),
+                        message.length() > 255 ? message.substring(0, 255) : message, id);
+                postponed.incrementAndGet();
+                schedule(retryAt);
+            } catch (DataAccessException again) {
+                logger.warn("Postponing scheduled transfer {} failed: {}", id, again.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Run claimed rows through transferBatch and advance them, in the claim transaction
+     */
+    private void execute(List<Claimed> due) {
+        List<TransferRequest> requests = new ArrayList<>(due.size());
+        for (Claimed c : due) {
+            requests.add(new TransferRequest(c.from, c.to, c.amount));
+        }
+        List<TransferResult> results = transfers.transferBatch(requests);
+
+        long horizonEnd = System.currentTimeMillis() + horizonMillis;
+        List<Object[]> updates = new ArrayList<>(due.size());
+        for (int i = 0; i < due.size(); i++) {
+            Claimed c = due.get(i);
+            TransferResult r = results.get(i);
+            if (r.getStatus() == TransferResult.Status.OK) {
+                executed.incrementAndGet();
+            } else {
+                rejected.incrementAndGet();
+            }
+            OffsetDateTime next = null;
+            if (c.recurrence != null) {
+                next = nextDueAt(c.firstDueAt, c.recurrence, c.occurrence);
+                long nextMillis = ceilToSecond(next.toInstant().toEpochMilli());
+                if (nextMillis < horizonEnd) {
+                    schedule(nextMillis);
+                }
+            }
+            String state = next != null ? "PENDING" : r.getStatus() == TransferResult.Status.OK ? "DONE" : "FAILED";
+            updates.add(new Object[] { state, next, next != null ? c.occurrence + 1 : c.occurrence,
+                    r.getStatus().name(), r.getMessage(), r.getTxId(), c.id });
+        }
+        jdbc.batchUpdate(ADVANCE_SQL, updates);
+    }
+
+    /**
+     * Due instant of the occurrence after `occurrence` (0 = the first one): always counted
+     * from firstDueAt, so a month-end date is not clamped for good after a short month
+     * (P1M from Jan 31: Feb 28, Mar 31, Apr 30...)
+     */
+    static OffsetDateTime nextDueAt(OffsetDateTime firstDueAt, String recurrence, int occurrence) {
+        return firstDueAt.plus(parseRecurrence(recurrence).multipliedBy(occurrence + 1));
+    }
+
+    private static Period parseRecurrence(String recurrence) {
+        Period period;
+        try {
+            period = Period.parse(recurrence);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("recurrence must be an ISO-8601 period such as P1D or P1M");
+        }
+        if (period.isZero() || period.isNegative()) {
+            throw new IllegalArgumentException("recurrence must be positive");
+        }
+        return period;
+    }
+
+    private static long ceilToSecond(long millis) {
+        return Math.floorDiv(millis + 999, 1000) * 1000;
+    }
+
+    private static final class Claimed {
+        final long id;
+        final String from;
+        final String to;
+        final BigDecimal amount;
+        final OffsetDateTime firstDueAt;
+        final String recurrence;
+        final int occurrence;
+
+        Claimed(long id, String from, String to, BigDecimal amount, OffsetDateTime firstDueAt,
+                String recurrence, int occurrence) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+            this.amount = amount;
+            this.firstDueAt = firstDueAt;
+            this.recurrence = recurrence;
+            this.occurrence = occurrence;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.bank.service;
+
+import com.example.bank.model.Account;
+import com.example.bank.model.AccountBalanceShard;
+import com.example.bank.model.TransferResult;
+import com.example.bank.repository.AccountBalanceShardRepository;
+import com.example.bank.repository.AccountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * "Split balance" mode for hot accounts (e.g. a merchant settlement account)
+ * 
+ * The balance of a split account is account.balance plus the sum of N rows in
+ * bank.account_balance_shard:
+ * - A credit adds to one random shard and never locks the account row, so thousands
+ *   of concurrent credits spread over N row locks instead of queueing on one
+ * - A debit locks the account row and then every shard in shard order, checks the
+ *   total and takes the amount from the account row first, then from the shards
+ * - Account rows are always locked before shards, and shards in account ID order,
+ *   so transfers between split accounts cannot deadlock
+ * - A background compaction folds the shards back into account.balance
+ * 
+ * The set of split accounts is cached per instance. A stale cache is still safe:
+ * an instance that doesn't know an account is split just credits/debits the account
+ * row, which keeps the total exact (a debit may only be rejected conservatively).
+ */
+@Service
+public class SplitBalanceService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SplitBalanceService.class);
+    
+    private final AccountRepository accountRepo;
+    private final AccountBalanceShardRepository shardRepo;
+    private final TransactionTemplate txTemplate;
+    private final TransferMetrics metrics;
+    private final LockTimeoutPolicy lockTimeouts;
+    private final List<String> configuredAccounts;
+    private final int defaultShards;
+    
+    // Split account ID -> number of shards
+    private final ConcurrentMap<Long, Integer> shardCounts = new ConcurrentHashMap<>();
+    
+    public SplitBalanceService(AccountRepository accountRepo,
+                               AccountBalanceShardRepository shardRepo,
+                               PlatformTransactionManager txManager,
+                               TransferMetrics metrics,
+                               LockTimeoutPolicy lockTimeouts,
+                               @Value("${bank.transfer.split-balance.accounts:}") List<String> configuredAccounts,
+                               @Value("${bank.transfer.split-balance.shards:8}") int defaultShards) {
+        this.accountRepo = accountRepo;
+        this.shardRepo = shardRepo;
+        this.txTemplate = new TransactionTemplate(txManager);
+        this.metrics = metrics;
+        this.lockTimeouts = lockTimeouts;
+        this.configuredAccounts = configuredAccounts;
+        this.defaultShards = defaultShards;
+    }
+    
+    /**
+     * Create the shards of the accounts listed in bank.transfer.split-balance.accounts
+     * and load every split account already present in the database
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        for (String number : configuredAccounts) {
+            if (!number.isBlank() && enableSplit(number.trim(), defaultShards) == 0) {
+                logger.warn("Split balance account {} does not exist yet", number);
+            }
+        }
+        for (Object[] row : shardRepo.countShardsByAccount()) {
+            shardCounts.put((Long) row[0], ((Long) row[1]).intValue());
+        }
+    }
+    
+    /**
+     * Put an account in split mode with the given number of shards
+     * Returns the shard count, or 0 when the account doesn't exist
+     */
+    public int enableSplit(String accountNumber, int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be positive");
+        }
+        Integer count = txTemplate.execute(status -> {
+            List<AccountRepository.AccountIdView> found = accountRepo.findIdsByAccountNumbers(List.of(accountNumber));
+            if (found.isEmpty()) {
+                return 0;
+            }
+            Long id = found.get(0).getId();
+            shardRepo.createShards(id, shards);
+            int total = shardRepo.lockByAccountId(id).size();
+            shardCounts.put(id, total);
+            return total;
+        });
+        return count == null ? 0 : count;
+    }
+    
+    public boolean isSplit(Long accountId) {
+        return shardCounts.containsKey(accountId);
+    }
+    
+    /**
+     * Transfer where at least one side is a split account; runs in the caller's transaction
+     * Lock order: account rows (ID order, via lockByIds), then shards (see lockShards).
+     * The balance of a credited split account is not read and is returned as null.
+     */
+    public TransferResult apply(Long fromId, Long toId, BigDecimal amount) {
+        boolean toSplit = isSplit(toId);
+        
+        // The debited account row is always locked; the credited one only if it is not split
+        List<Long> ids = new ArrayList<>();
+        ids.add(fromId);
+        if (!toSplit) {
+            ids.add(toId);
+        }
+        Collections.sort(ids);
+        long start = System.nanoTime();
+        Map<Long, Account> locked = new HashMap<>();
+        for (Account a : lockTimeouts.lock(() -> accountRepo.lockByIds(ids))) {
+            locked.put(a.getId(), a);
+        }
+        Account from = locked.get(fromId);
+        Account to = locked.get(toId);
+        if (from == null || (!toSplit && to == null)) {
+            return TransferResult.fail(TransferResult.Status.ERROR, "account not found");
+        }
+        Map<Long, List<AccountBalanceShard>> shards = lockShards(fromId, toSplit ? List.of(toId) : List.of());
+        metrics.record(TransferMetrics.Phase.LOCK, start);
+        
+        start = System.nanoTime();
+        try {
+            // BALANCE VALIDATION: Exact total of the debited account
+            List<AccountBalanceShard> fromShards = shards.getOrDefault(fromId, List.of());
+            BigDecimal total = totalBalance(from, fromShards);
+            if (total.compareTo(amount) < 0) {
+                return TransferResult.fail(TransferResult.Status.INSUFFICIENT_FUNDS, "insufficient funds");
+            }
+            debit(from, fromShards, amount);
+            
+            // CREDIT: The locked random shard of a split account, or the locked account row
+            if (toSplit) {
+                credit(shards.get(toId), amount);
+                return TransferResult.ok(null, total.subtract(amount), null);
+            }
+            to.setBalance(to.getBalance().add(amount));
+            return TransferResult.ok(null, total.subtract(amount), to.getBalance());
+        } finally {
+            metrics.record(TransferMetrics.Phase.VALIDATE, start);
+        }
+    }
+    
+    /**
+     * Lock the shards a transfer touches; the caller has already locked its account rows
+     * Every shard of the debited account (if split) and one random shard of each
+     * credited split account, in account ID order then shard order, so two transfers
+     * in opposite directions between split accounts cannot deadlock. A credited shard
+     * that no longer exists (split mode removed elsewhere) fails the attempt with a
+     * retryable ConcurrencyFailureException: locking the account row now would break
+     * the order, the retry locks it with the other rows instead.
+     * Returns the locked shards by account ID.
+     */
+    public Map<Long, List<AccountBalanceShard>> lockShards(Long debitedId, Collection<Long> creditedIds) {
+        return lockShards(debitedId == null ? List.of() : List.of(debitedId), creditedIds);
+    }
+    
+    /**
+     * lockShards for a batch with several debited accounts: every shard of each debited
+     * split account, one random shard of each split account that is only credited
+     */
+    public Map<Long, List<AccountBalanceShard>> lockShards(Collection<Long> debitedIds, Collection<Long> creditedIds) {
+        SortedSet<Long> accounts = new TreeSet<>();
+        for (Long id : debitedIds) {
+            if (isSplit(id)) {
+                accounts.add(id);
+            }
+        }
+        for (Long id : creditedIds) {
+            if (isSplit(id)) {
+                accounts.add(id);
+            }
+        }
+        Map<Long, List<AccountBalanceShard>> locked = new HashMap<>();
+        for (Long accountId : accounts) {
+            if (debitedIds.contains(accountId)) {
+                locked.put(accountId, lockTimeouts.lock(() -> shardRepo.lockByAccountId(accountId)));
+                continue;
+            }
+            int shard = ThreadLocalRandom.current().nextInt(shardCounts.getOrDefault(accountId, 1));
+            Optional<AccountBalanceShard> found = lockTimeouts.lock(() -> shardRepo.lockShard(accountId, shard));
+            if (found.isEmpty()) {
+                shardCounts.remove(accountId);
+                throw new ConcurrencyFailureException("shard " + shard + " of account " + accountId + " no longer exists");
+            }
+            locked.put(accountId, List.of(found.get()));
+        }
+        return locked;
+    }
+    
+    /**
+     * Exact balance of a locked split account: the account row plus its locked shards
+     */
+    public BigDecimal totalBalance(Account account, List<AccountBalanceShard> shards) {
+        BigDecimal total = account.getBalance();
+        for (AccountBalanceShard s : shards) {
+            total = total.add(s.getBalance());
+        }
+        return total;
+    }
+    
+    /**
+     * Take an amount already checked against totalBalance: account row first, then shards in order
+     */
+    public void debit(Account account, List<AccountBalanceShard> shards, BigDecimal amount) {
+        BigDecimal remaining = amount;
+        BigDecimal take = account.getBalance().max(BigDecimal.ZERO).min(remaining);
+        account.setBalance(account.getBalance().subtract(take));
+        remaining = remaining.subtract(take);
+        for (AccountBalanceShard s : shards) {
+            if (remaining.signum() == 0) {
+                break;
+            }
+            take = s.getBalance().max(BigDecimal.ZERO).min(remaining);
+            s.setBalance(s.getBalance().subtract(take));
+            remaining = remaining.subtract(take);
+        }
+    }
+    
+    /**
+     * Credit the shard locked by lockShards for a credited split account
+     */
+    public void credit(List<AccountBalanceShard> lockedShard, BigDecimal amount) {
+        AccountBalanceShard s = lockedShard.get(0);
+        s.setBalance(s.getBalance().add(amount));
+    }
+    
+    /**
+     * Fold the shards of every split account back into account.balance
+     * Each account is compacted in its own short transaction
+     */
+    @Scheduled(fixedDelayString = "${bank.transfer.split-balance.compaction-interval-ms:60000}")
+    public void compact() {
+        for (Long accountId : shardCounts.keySet()) {
+            txTemplate.executeWithoutResult(status -> {
+                List<Account> locked = accountRepo.lockByIds(List.of(accountId));
+                if (locked.isEmpty()) {
+                    return;
+                }
+                Account account = locked.get(0);
+                BigDecimal folded = BigDecimal.ZERO;
+                for (AccountBalanceShard s : shardRepo.lockByAccountId(accountId)) {
+                    folded = folded.add(s.getBalance());
+                    s.setBalance(BigDecimal.ZERO);
+                }
+                account.setBalance(account.getBalance().add(folded));
+            });
+        }
+    }
+}
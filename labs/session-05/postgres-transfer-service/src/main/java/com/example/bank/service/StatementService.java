@@ -0,0 +1,162 @@
+package com.example.bank.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+
+/**
+ * Streams the transactions of an account with constant memory
+ * Rows are read through a server-side cursor (pgjdbc only uses one when autocommit is
+ * off and a fetch size is set, hence the read-only transaction) and each row is written
+ * to the output stream as soon as it is read; nothing is collected into a List.
+ */
+@Service
+public class StatementService {
+    
+    public enum Format { NDJSON, CSV }
+    
+    // Half-open window [from, to) on the partition key, so only those months are scanned.
+    // One branch per index (ix_tx_from_account / ix_tx_to_account), each already in
+    // (timestamp, id) order, so the sort is a merge instead of a sort of the whole window;
+    // a self-transfer is only returned by the first branch (as in findPageAfter)
+    private static final String STATEMENT_SQL =
+            "(SELECT id, from_account, to_account, amount, timestamp, status FROM bank.tx " +
+            "WHERE from_account = ? AND timestamp >= ? AND timestamp < ? ORDER BY timestamp, id) " +
+            "UNION ALL " +
+            "(SELECT id, from_account, to_account, amount, timestamp, status FROM bank.tx " +
+            "WHERE to_account = ? AND from_account <> ? AND timestamp >= ? AND timestamp < ? ORDER BY timestamp, id) " +
+            "ORDER BY timestamp, id";
+    
+    private static final OffsetDateTime MIN_TIME = OffsetDateTime.parse("1970-01-01T00:00:00Z");
+    private static final OffsetDateTime MAX_TIME = OffsetDateTime.parse("9999-12-31T00:00:00Z");
+    
+    private final JdbcTemplate cursorJdbc;
+    private final ObjectMapper mapper;
+    
+    public StatementService(DataSource dataSource,
+                            ObjectMapper mapper,
+                            @Value("${bank.statement.fetch-size:1000}") int fetchSize) {
+        this.cursorJdbc = new JdbcTemplate(dataSource);
+        this.cursorJdbc.setFetchSize(fetchSize);
+        this.mapper = mapper;
+    }
+    
+    /**
+     * Write every transaction touching the account within [from, to) (null = unbounded)
+     */
+    @Transactional(readOnly = true)
+    public void writeStatement(String accountNumber, OffsetDateTime from, OffsetDateTime to,
+                               Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+        rowWriter.begin();
+        OffsetDateTime lower = from != null ? from : MIN_TIME;
+        OffsetDateTime upper = to != null ? to : MAX_TIME;
+        cursorJdbc.query(STATEMENT_SQL, rs -> {
+            try {
+                rowWriter.write(accountNumber, rs);
+            } catch (IOException e) {
+                // Client went away: abort the query instead of reading the rest
+                throw new UncheckedIOException(e);
+            }
+        }, accountNumber, lower, upper, accountNumber, accountNumber, lower, upper);
+        rowWriter.end();
+        writer.flush();
+    }
+    
+    private interface RowWriter {
+        void begin() throws IOException;
+        
+        void write(String accountNumber, ResultSet rs) throws IOException, SQLException;
+        
+        void end() throws IOException;
+    }
+    
+    private final class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator json;
+        
+        NdjsonRowWriter(Writer writer) throws IOException {
+            this.json = mapper.getFactory().createGenerator(writer);
+            this.json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+        
+        @Override
+        public void begin() {
+        }
+        
+        @Override
+        public void write(String accountNumber, ResultSet rs) throws IOException, SQLException {
+            String fromAccount = rs.getString("from_account");
+            json.writeStartObject();
+            json.writeNumberField("id", rs.getLong("id"));
+            json.writeStringField("timestamp", rs.getObject("timestamp", OffsetDateTime.class).toString());
+            json.writeStringField("direction", accountNumber.equals(fromAccount) ? "DEBIT" : "CREDIT");
+            json.writeStringField("from", fromAccount);
+            json.writeStringField("to", rs.getString("to_account"));
+            json.writeNumberField("amount", rs.getBigDecimal("amount"));
+            json.writeStringField("status", rs.getString("status"));
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+        
+        @Override
+        public void end() throws IOException {
+            json.flush();
+        }
+    }
+    
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        
+        CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+        
+        @Override
+        public void begin() throws IOException {
+            writer.write("id,timestamp,direction,from,to,amount,status\n");
+        }
+        
+        @Override
+        public void write(String accountNumber, ResultSet rs) throws IOException, SQLException {
+            String fromAccount = rs.getString("from_account");
+            BigDecimal amount = rs.getBigDecimal("amount");
+            writer.write(Long.toString(rs.getLong("id")));
+            writer.write(',');
+            writer.write(rs.getObject("timestamp", OffsetDateTime.class).toString());
+            writer.write(',');
+            writer.write(accountNumber.equals(fromAccount) ? "DEBIT" : "CREDIT");
+            writer.write(',');
+            writer.write(csv(fromAccount));
+            writer.write(',');
+            writer.write(csv(rs.getString("to_account")));
+            writer.write(',');
+            writer.write(amount.toPlainString());
+            writer.write(',');
+            writer.write(csv(rs.getString("status")));
+            writer.write('\n');
+        }
+        
+        @Override
+        public void end() {
+        }
+        
+        private static String csv(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
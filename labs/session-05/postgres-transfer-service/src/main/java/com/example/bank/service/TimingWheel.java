@@ -0,0 +1,115 @@
+package com.example.bank.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel of due instants (epoch millis)
+ *
+ * The lowest wheel has `size` buckets of tickMillis each; instants beyond its interval
+ * (tickMillis * size) go to an overflow wheel whose tick is that interval, created on
+ * demand, and so on. Adding and expiring an instant is O(1). When the clock enters an
+ * overflow bucket, its instants cascade down into the finer wheel. Equal instants are
+ * stored once, so a million transfers due at the same second cost one entry.
+ * An instant expires once the clock passed the end of its tick, never before it is due.
+ */
+class TimingWheel {
+
+    private final long tickMillis;
+    private final int size;
+    private final long interval;
+    private final List<Set<Long>> buckets;
+    private long currentTime;
+    private int entries;
+    private TimingWheel overflow;
+
+    TimingWheel(long tickMillis, int size, long startMillis) {
+        if (tickMillis < 1 || size < 2) {
+            throw new IllegalArgumentException("invalid timing wheel");
+        }
+        this.tickMillis = tickMillis;
+        this.size = size;
+        this.interval = tickMillis * size;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new HashSet<>());
+        }
+        this.currentTime = startMillis - Math.floorMod(startMillis, tickMillis);
+    }
+
+    /**
+     * Schedule an instant; false when its tick is already over (it is due)
+     */
+    synchronized boolean add(long dueMillis) {
+        if (dueMillis < currentTime) {
+            return false;
+        }
+        if (dueMillis < currentTime + interval) {
+            if (bucketOf(dueMillis).add(dueMillis)) {
+                entries++;
+            }
+            return true;
+        }
+        if (overflow == null) {
+            overflow = new TimingWheel(interval, size, currentTime);
+        }
+        return overflow.add(dueMillis);
+    }
+
+    /**
+     * Move the clock to nowMillis; returns the instants whose tick ended
+     */
+    synchronized List<Long> advance(long nowMillis) {
+        List<Long> expired = new ArrayList<>();
+        while (currentTime + tickMillis <= nowMillis) {
+            drain(bucketOf(currentTime), expired);
+            currentTime += tickMillis;
+            cascade(expired);
+        }
+        return expired;
+    }
+
+    /**
+     * Pending instants, overflow wheels included
+     */
+    synchronized int size() {
+        return entries + (overflow == null ? 0 : overflow.size());
+    }
+
+    /**
+     * Overflow side: move the clock to nowMillis and hand out the instants of every
+     * bucket entered on the way, to be re-added to the finer wheel
+     */
+    private synchronized void enter(long nowMillis, List<Long> entered) {
+        while (currentTime + tickMillis <= nowMillis) {
+            currentTime += tickMillis;
+            cascade(entered);
+            drain(bucketOf(currentTime), entered);
+        }
+    }
+
+    private void cascade(List<Long> expired) {
+        if (overflow == null) {
+            return;
+        }
+        List<Long> entered = new ArrayList<>();
+        overflow.enter(currentTime, entered);
+        for (Long due : entered) {
+            if (!add(due)) {
+                expired.add(due);
+            }
+        }
+    }
+
+    private void drain(Set<Long> bucket, List<Long> into) {
+        entries -= bucket.size();
+        into.addAll(bucket);
+        bucket.clear();
+    }
+
+    private Set<Long> bucketOf(long millis) {
+        return buckets.get((int) Math.floorMod(millis / tickMillis, (long) size));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.bank.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of each phase of a transfer, so a p99 spike can be attributed to lock
+ * waits, commit (WAL fsync) or connection-pool starvation
+ * 
+ * Phases:
+ * - CONNECTION: beginning the transaction, i.e. borrowing a pooled connection
+ * - RESOLVE: account number to ID resolution
+ * - LOCK: acquiring the rows (lockByIds, optimistic read or conditional update)
+ * - VALIDATE: balance check and in-memory balance update
+ * - INSERT: Transaction and audit log writes
+ * - COMMIT: commit, including the deferred flush of Hibernate and of the audit batch
+ * Values are recorded in microseconds and reported in milliseconds; the retry
+ * histogram records the number of retries per completed transfer, and the lock
+ * timeout histogram how long transfers waited for their locks before giving up.
+ */
+@Component
+public class TransferMetrics {
+    
+    public enum Phase { CONNECTION, RESOLVE, LOCK, VALIDATE, INSERT, COMMIT }
+    
+    private final Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+    private final LatencyHistogram retries = new LatencyHistogram();
+    private final LatencyHistogram lockTimeoutWaits = new LatencyHistogram();
+    private volatile OffsetDateTime windowStart = OffsetDateTime.now();
+    
+    public TransferMetrics() {
+        for (Phase p : Phase.values()) {
+            phases.put(p, new LatencyHistogram());
+        }
+    }
+    
+    /**
+     * Record the time elapsed since startNanos (a System.nanoTime() value)
+     */
+    public void record(Phase phase, long startNanos) {
+        phases.get(phase).record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+    
+    public void recordRetries(int count) {
+        retries.record(count);
+    }
+    
+    /**
+     * Record a lock wait that ended in a lock timeout, started at startNanos
+     */
+    public void recordLockTimeout(long startNanos) {
+        lockTimeoutWaits.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+    
+    /**
+     * Percentiles per phase since the window started; reset starts a new window
+     */
+    public Map<String, Object> snapshot(boolean reset) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("windowStart", windowStart.toString());
+        Map<String, Object> latencies = new LinkedHashMap<>();
+        for (Map.Entry<Phase, LatencyHistogram> e : phases.entrySet()) {
+            latencies.put(e.getKey().name().toLowerCase(), e.getValue().snapshot(reset, 1000.0));
+        }
+        result.put("latencyMs", latencies);
+        result.put("retries", retries.snapshot(reset, 1.0));
+        result.put("lockTimeoutWaitMs", lockTimeoutWaits.snapshot(reset, 1000.0));
+        if (reset) {
+            windowStart = OffsetDateTime.now();
+        }
+        return result;
+    }
+}
@@ -1,24 +1,31 @@
 package com.example.bank.service;
 
 import com.example.bank.model.Account;
+import com.example.bank.model.AccountBalanceShard;
 import com.example.bank.model.AuditLog;
+import com.example.bank.model.Leg;
 import com.example.bank.model.Transaction;
+import com.example.bank.model.TransferRequest;
 import com.example.bank.model.TransferResult;
 import com.example.bank.repository.AccountRepository;
-import com.example.bank.repository.AuditLogRepository;
 import com.example.bank.repository.TransactionRepository;
-import org.springframework.dao.OptimisticLockingFailureException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 @Service
 public class TransferService {
@@ -26,135 +33,755 @@ public class TransferService {
     // Repositories to access database entities
     private final AccountRepository accountRepo;
     private final TransactionRepository txRepo;
-    private final AuditLogRepository auditRepo;
+    
+    // Batched audit log writer (bank.audit.mode)
+    private final AuditLogWriter auditWriter;
     
     // Transaction manager for programmatic transaction handling
     private final PlatformTransactionManager txManager;
     
+    // Account number -> ID cache
+    private final AccountIdResolver idResolver;
+    
+    // How balances are moved (bank.transfer.strategy)
+    private final TransferStrategy strategy;
+    
+    // Split balance mode for hot accounts
+    private final SplitBalanceService splitBalance;
+    
+    // Ledger mode: balances are never updated in place (bank.transfer.strategy=ledger)
+    private final LedgerService ledger;
+    private final boolean ledgerMode;
+    
+    // Retry classification, backoff and conflict metrics
+    private final RetryEngine retryEngine;
+    
+    // lock_timeout / statement_timeout around account locks
+    private final LockTimeoutPolicy lockTimeouts;
+    
+    // Per-phase latency histograms
+    private final TransferMetrics metrics;
+    
+    // Idempotency-Key storage and cache
+    private final IdempotencyService idempotency;
+    
+    // Transactional outbox for TransferCompleted events
+    private final OutboxWriter outbox;
+    
+    // Optional per-account admission in the JVM (bank.transfer.admission.enabled)
+    private final AccountAdmission admission;
+    
+    // Optional group commit pipeline (null when disabled)
+    private final GroupCommitter groupCommitter;
+    
+    // Isolation level of single transfers (bank.transfer.isolation)
+    private final Isolation isolation;
+    
     // Constructor that injects necessary dependencies
     public TransferService(AccountRepository accountRepo, 
                          TransactionRepository txRepo, 
-                         AuditLogRepository auditRepo, 
-                         PlatformTransactionManager txManager) {
+                         AuditLogWriter auditWriter, 
+                         PlatformTransactionManager txManager,
+                         AccountIdResolver idResolver,
+                         List<TransferStrategy> strategies,
+                         SplitBalanceService splitBalance,
+                         LedgerService ledger,
+                         IdempotencyService idempotency,
+                         RetryEngine retryEngine,
+                         LockTimeoutPolicy lockTimeouts,
+                         TransferMetrics metrics,
+                         AccountAdmission admission,
+                         OutboxWriter outbox,
+                         @Value("${bank.transfer.strategy:pessimistic}") String strategyName,
+                         @Value("${bank.transfer.isolation:READ_COMMITTED}") Isolation isolation,
+                         @Value("${bank.transfer.group-commit.enabled:false}") boolean groupCommitEnabled,
+                         @Value("${bank.transfer.group-commit.window-ms:5}") long groupCommitWindowMs,
+                         @Value("${bank.transfer.group-commit.max-batch-size:100}") int groupCommitMaxBatch,
+                         @Value("${bank.transfer.group-commit.queue-capacity:10000}") int groupCommitQueueCapacity) {
         this.accountRepo = accountRepo;
         this.txRepo = txRepo;
-        this.auditRepo = auditRepo;
+        this.auditWriter = auditWriter;
         this.txManager = txManager;
+        this.idResolver = idResolver;
+        this.strategy = strategies.stream()
+                .filter(st -> st.name().equals(strategyName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("unknown bank.transfer.strategy: " + strategyName));
+        this.splitBalance = splitBalance;
+        this.ledger = ledger;
+        this.ledgerMode = LedgerTransferStrategy.NAME.equals(strategy.name());
+        this.idempotency = idempotency;
+        this.retryEngine = retryEngine;
+        this.lockTimeouts = lockTimeouts;
+        this.metrics = metrics;
+        this.admission = admission;
+        this.outbox = outbox;
+        this.isolation = isolation;
+        // Micro-batches go through transferBatch, which locks rows like the pessimistic
+        // strategy (or applies the ledger): other strategies would be silently bypassed
+        if (groupCommitEnabled && !ledgerMode && !PessimisticTransferStrategy.NAME.equals(strategy.name())) {
+            throw new IllegalStateException("group commit requires bank.transfer.strategy=pessimistic or ledger, not "
+                    + strategy.name());
+        }
+        this.groupCommitter = groupCommitEnabled
+                ? new GroupCommitter(this::commitGroup, groupCommitWindowMs, groupCommitMaxBatch, groupCommitQueueCapacity)
+                : null;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (groupCommitter != null) {
+            groupCommitter.shutdown();
+        }
+    }
+    
+    /**
+     * Name of the active transfer strategy
+     */
+    public String getStrategyName() {
+        return strategy.name();
+    }
+    
+    /**
+     * Group commit pipeline, or null when bank.transfer.group-commit.enabled=false
+     */
+    public GroupCommitter getGroupCommitter() {
+        return groupCommitter;
     }
     
     /**
      * Main method to transfer funds between accounts
-     * Choose best isolation type: Isolation.SERIALIZABLE, Isolation.REPEATABLE_READ, Isolation.READ_COMMITTED
-	 * to guarantee total consistency
-     * and pessimistic locking to avoid race conditions
+     * Runs in the transaction opened by transferWithRetryDirect
      */
-    @Transactional(isolation = Isolation.READ_UNCOMMITTED)
     public TransferResult transferFunds(String fromAccountNum, String toAccountNum, BigDecimal amount) {
         // Parameter validation: ensures they are not null
         Objects.requireNonNull(fromAccountNum);
         Objects.requireNonNull(toAccountNum);
         Objects.requireNonNull(amount);
         
-        // Business validation: amount must be positive
-
-		
-
-        // Find accounts by number and get their IDs
-        // If they don't exist, throw exception (this should be handled better in production)
-        Long fromId = 0L;
-        Long toId = 0L;
-        
-        // ANTI-DEADLOCK STRATEGY: Sort IDs to always lock in the same order
-        // This prevents two transfers from blocking each other
-        List<Long> ids = new ArrayList<>();
-        // Sort in ascending order
-
-        // PESSIMISTIC LOCKING: Get accounts with exclusive lock
-        // The lockByIds method uses @Lock(PESSIMISTIC_WRITE) to lock the rows
-        List<Account> locked = null; //change this
-        
-        // Map locked accounts to from and to variables
-        // Since accounts are ordered by ID, we need to map them correctly
-        Account from = locked.get(0).getId().equals(fromId) ? locked.get(0) : locked.get(1);
-        Account to = locked.get(0).getId().equals(toId) ? locked.get(0) : locked.get(1);
-        
-        // BALANCE VALIDATION: Check that source account has sufficient funds, if not, create audit log for failed transfer
-		// and return failure result
-        
-        
-        // If the balance is ok, CREATE TRANSACTION: Record the start of the transfer
-        // The "started" status indicates the transfer is in progress
-        
-        
-        // UPDATE BALANCES: Perform the mathematical transfer
-        // from.balance = from.balance - amount
-        // to.balance = to.balance + amount
-        
+        // Business validation: amount must be positive and accounts different
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("amount must be positive");
+        }
+        if (fromAccountNum.equals(toAccountNum)) {
+            throw new IllegalArgumentException("source and destination are the same account");
+        }
         
-        // PERSIST CHANGES: Save updated accounts
-        // Spring Data JPA will detect changes and persist them
+        // Find account IDs by number (cached, at most one query for both accounts)
+        long start = System.nanoTime();
+        Map<String, Long> idsByNumber = idResolver.resolveAll(List.of(fromAccountNum, toAccountNum));
+        metrics.record(TransferMetrics.Phase.RESOLVE, start);
+        Long fromId = idsByNumber.get(fromAccountNum);
+        Long toId = idsByNumber.get(toAccountNum);
+        if (fromId == null || toId == null) {
+            String missing = fromId == null ? fromAccountNum : toAccountNum;
+            return TransferResult.fail(TransferResult.Status.ERROR, "account not found: " + missing);
+        }
         
-        // FINALIZE TRANSACTION: Mark as completed
+        // MOVE MONEY: Hot (split balance) accounts have their own path, everything
+        // else uses the configured strategy; the ledger already takes no row locks and
+        // counts the shards in its balance, so it handles split accounts itself
+        TransferResult applied = !ledgerMode && (splitBalance.isSplit(fromId) || splitBalance.isSplit(toId))
+                ? splitBalance.apply(fromId, toId, amount)
+                : strategy.apply(fromId, toId, amount);
+        if (applied.getStatus() == TransferResult.Status.ERROR) {
+            // The cached IDs no longer match a row (account closed): forget them
+            idResolver.invalidate(fromAccountNum);
+            idResolver.invalidate(toAccountNum);
+        }
+        if (applied.getStatus() != TransferResult.Status.OK) {
+            // FAILED AUDIT: Record why the transfer was rejected
+            auditWriter.write(new AuditLog("TRANSFER_FAILED",
+                    "from=" + fromAccountNum + " to=" + toAccountNum + " amount=" + amount + " reason=" + applied.getMessage()));
+            return applied;
+        }
         
+        // RECORD TRANSACTION: Balances are already updated, so it is stored as completed
+        start = System.nanoTime();
+        Transaction tx = txRepo.save(new Transaction(fromAccountNum, toAccountNum, amount, "COMPLETED"));
         
         // SUCCESSFUL AUDIT: Record the success of the transfer
-        // Use simple string format for easier debugging
+        auditWriter.write(new AuditLog("TRANSFER_OK",
+                "from=" + fromAccountNum + " to=" + toAccountNum + " amount=" + amount + " strategy=" + strategy.name()));
         
+        // OUTBOX: The TransferCompleted event commits (or rolls back) with the transfer
+        outbox.transferCompleted(tx.getId(), fromAccountNum, toAccountNum, amount, tx.getTimestamp());
+        metrics.record(TransferMetrics.Phase.INSERT, start);
         
-        // Return successful result with account information
-        //return TransferResult.ok(tx.getId(), from.getBalance(), to.getBalance());
-		return null;
+        return TransferResult.ok(tx.getId(), applied.getFromBalance(), applied.getToBalance());
     }
     
     /**
      * High-level method that handles automatic retries
-     * Useful for handling optimistic locking conflicts
+     * Serialization failures, deadlocks and optimistic locking conflicts are retried
+     * with jittered exponential backoff (see RetryEngine), up to maxRetries times
      */
     public TransferResult transferWithRetry(String from, String to, BigDecimal amount, int maxRetries) {
+        // GROUP COMMIT: Join the next micro-batch instead of committing alone
+        if (groupCommitter != null) {
+            TransferResult grouped = transferGrouped(from, to, amount);
+            if (grouped != null) {
+                return grouped;
+            }
+        }
+        return transferWithRetryDirect(from, to, amount, maxRetries, null, null);
+    }
+    
+    /**
+     * Result of the transfer through group commit, or null when it must run on its own
+     * (queue full, or the whole micro-batch failed): the caller then retries it on its
+     * own thread, so a failed batch never stalls the group commit thread
+     */
+    private TransferResult transferGrouped(String from, String to, BigDecimal amount) {
+        CompletableFuture<TransferResult> pending = groupCommitter.submit(new TransferRequest(from, to, amount));
+        if (pending == null) {
+            return null;
+        }
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return TransferResult.fail(TransferResult.Status.ERROR, "interrupted while waiting for group commit");
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * transferWithRetry with a total time budget instead of a retry count
+     * Retries (with backoff) continue while the next attempt can start within the budget
+     */
+    public TransferResult transferWithRetry(String from, String to, BigDecimal amount, Duration budget) {
+        if (budget.isNegative() || budget.isZero()) {
+            throw new IllegalArgumentException("budget must be positive");
+        }
+        OptionalLong deadlineNanos = OptionalLong.of(System.nanoTime() + budget.toNanos());
+        if (groupCommitter != null) {
+            TransferResult grouped = transferGrouped(from, to, amount);
+            if (grouped != null) {
+                return grouped;
+            }
+        }
+        return transferWithRetryDirect(from, to, amount, Integer.MAX_VALUE, deadlineNanos, null, null);
+    }
+    
+    /**
+     * transferWithRetry for requests carrying an Idempotency-Key
+     * A key seen recently is answered from memory; otherwise the stored result is
+     * looked up, and a new result is stored in the same transaction as the transfer.
+     * Idempotent transfers always bypass group commit.
+     */
+    public TransferResult transferIdempotent(String idempotencyKey, String from, String to, BigDecimal amount, int maxRetries) {
+        String requestHash = IdempotencyService.fingerprint(from, to, amount);
+        
+        // FAST PATH: Duplicate retry answered without a connection
+        TransferResult cached = idempotency.cached(idempotencyKey, requestHash);
+        if (cached != null) {
+            return cached;
+        }
+        return transferWithRetryDirect(from, to, amount, maxRetries, idempotencyKey, requestHash);
+    }
+    
+    /**
+     * Commits one micro-batch of the group commit pipeline in a single transaction
+     * If the batch transaction fails (serialization failure, deadlock...) the exception
+     * fails every caller's future, and each caller re-runs its transfer with the
+     * regular retry loop on its own thread
+     */
+    private List<TransferResult> commitGroup(List<TransferRequest> requests) {
+        TransactionTemplate template = new TransactionTemplate(txManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        return template.execute(status -> transferBatch(requests));
+    }
+    
+    private TransferResult transferWithRetryDirect(String from, String to, BigDecimal amount, int maxRetries,
+                                                   String idempotencyKey, String requestHash) {
+        return transferWithRetryDirect(from, to, amount, maxRetries, OptionalLong.empty(), idempotencyKey, requestHash);
+    }
+    
+    private TransferResult transferWithRetryDirect(String from, String to, BigDecimal amount, int maxRetries,
+                                                   OptionalLong deadlineNanos, String idempotencyKey, String requestHash) {
         int attempts = 0;
         
-        // RETRY LOOP: Try until maximum retries are reached
+        // ADMISSION: Accounts to queue on in the JVM (unknown accounts are left to transferFunds)
+        Map<String, Long> admissionIds = admission.isEnabled() ? idResolver.resolveAll(List.of(from, to)) : Map.of();
+        Long fromId = admissionIds.get(from);
+        Long toId = admissionIds.get(to);
+        
+        // RETRY LOOP: Try until maximum retries or the time budget are exhausted
         while (true) {
+            // ADMISSION: Wait for the accounts' stripes before borrowing a connection,
+            // or fail fast when too many transfers already queue on them
+            AccountAdmission.Permit permit = null;
+            if (fromId != null && toId != null) {
+                permit = admission.acquire(fromId, toId);
+                if (permit == null) {
+                    return TransferResult.fail(TransferResult.Status.BUSY, "too many concurrent transfers on these accounts");
+                }
+            }
+            
             // CONFIGURE PROGRAMMATIC TRANSACTION: Create transaction definition
             DefaultTransactionDefinition def = new DefaultTransactionDefinition();
-            def.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE); // Same isolation level
+            def.setIsolationLevel(isolation.value()); // READ_COMMITTED unless configured otherwise
             def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED); // Require existing transaction or create new one
             
-            // START TRANSACTION: Get transaction status
-            TransactionStatus status = txManager.getTransaction(def);
+            // START TRANSACTION: Get transaction status (borrows a pooled connection)
+            long start = System.nanoTime();
+            TransactionStatus status;
+            try {
+                status = txManager.getTransaction(def);
+            } catch (RuntimeException e) {
+                release(permit);
+                throw e;
+            }
+            metrics.record(TransferMetrics.Phase.CONNECTION, start);
+            retryEngine.recordAttempt(from, to);
             
             try {
+                // IDEMPOTENCY: A committed result for this key is returned as is
+                if (idempotencyKey != null) {
+                    TransferResult stored = idempotency.stored(idempotencyKey, requestHash);
+                    if (stored != null) {
+                        txManager.commit(status);
+                        return stored;
+                    }
+                }
+                
                 // ATTEMPT TRANSFER: Call the main method
                 TransferResult res = transferFunds(from, to, amount);
                 
-                // SUCCESS: Commit the transaction
+                // IDEMPOTENCY: Store the result with the transfer; if a concurrent request
+                // with the same key won (it committed: ON CONFLICT waited for it), discard
+                // this transfer and loop again, which releases the permit and finds its result
+                if (idempotencyKey != null && !idempotency.store(idempotencyKey, requestHash, res)) {
+                    txManager.rollback(status);
+                    continue;
+                }
+                
+                // SUCCESS: Commit the transaction (a serialization failure may surface here)
+                start = System.nanoTime();
                 txManager.commit(status);
+                metrics.record(TransferMetrics.Phase.COMMIT, start);
+                metrics.recordRetries(attempts);
+                if (idempotencyKey != null) {
+                    idempotency.remember(idempotencyKey, requestHash, res);
+                }
                 return res;
                 
-            } catch (OptimisticLockingFailureException e) {
-                // OPTIMISTIC CONFLICT: Another transaction modified the data
-                // Rollback and retry if limit not reached
-                txManager.rollback(status);
-                if (attempts++ < maxRetries) {
-                    continue; // Retry
+            } catch (RuntimeException e) {
+                // The commit itself may have failed, in which case there is nothing to roll back
+                if (!status.isCompleted()) {
+                    txManager.rollback(status);
                 }
-                // Limit reached, return error
-                return TransferResult.fail(TransferResult.Status.CONFLICT_RETRY, "optimistic conflict after retries");
+                // Let the next transfer in while this one backs off
+                release(permit);
+                permit = null;
                 
-            } catch (DataAccessException e) {
-                // DATABASE ERROR: Technical problem (connection, constraint, etc.)
-                txManager.rollback(status);
-                if (attempts++ < maxRetries) {
-                    continue; // Retry
+                // NON-RETRYABLE ERROR: Logic/validation errors propagate, lock timeouts
+                // and other database errors (constraints...) are reported without retrying
+                RetryEngine.Reason reason = retryEngine.classify(e);
+                if (reason == null) {
+                    if (LockTimeoutPolicy.isLockTimeout(e)) {
+                        return TransferResult.fail(TransferResult.Status.LOCK_TIMEOUT, "timed out waiting for account locks");
+                    }
+                    if (e instanceof DataAccessException) {
+                        return TransferResult.fail(TransferResult.Status.ERROR, "db error: " + e.getMessage());
+                    }
+                    throw e;
                 }
-                return TransferResult.fail(TransferResult.Status.ERROR, "db error: " + e.getMessage());
                 
-            } catch (RuntimeException e) {
-                // NON-RECOVERABLE ERROR: Logic or validation error
-                // Don't retry, propagate the error
-                txManager.rollback(status);
-                throw e;
+                // RETRYABLE CONFLICT: Back off with full jitter, within count and time budget
+                retryEngine.recordConflict(reason, from, to);
+                long pauseMillis = retryEngine.backoffMillis(attempts);
+                // nanoTime may be negative: deadlines are compared by difference, never against a sentinel
+                if (attempts++ >= maxRetries || (deadlineNanos.isPresent()
+                        && System.nanoTime() + pauseMillis * 1_000_000 - deadlineNanos.getAsLong() > 0)) {
+                    metrics.recordRetries(attempts - 1);
+                    if (reason == RetryEngine.Reason.TRANSIENT) {
+                        return TransferResult.fail(TransferResult.Status.ERROR, "db error: " + e.getMessage());
+                    }
+                    return TransferResult.fail(TransferResult.Status.CONFLICT_RETRY,
+                            reason.name().toLowerCase() + " after " + attempts + " attempts");
+                }
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return TransferResult.fail(TransferResult.Status.ERROR, "interrupted while retrying");
+                }
+            } finally {
+                release(permit);
+            }
+        }
+    }
+    
+    private static void release(AccountAdmission.Permit permit) {
+        if (permit != null) {
+            permit.close();
+        }
+    }
+    
+    /**
+     * Runs many transfers inside a single database transaction
+     * All involved accounts are locked once (one ordered lockByIds call, then the shards
+     * of split accounts as in splitTransfer), debits and credits are applied in memory
+     * and Hibernate flushes everything at commit.
+     * Business failures (unknown account, insufficient funds...) only reject the
+     * affected item (a null item is an "invalid request"); the returned list has one
+     * result per request, in input order.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<TransferResult> transferBatch(List<TransferRequest> requests) {
+        Objects.requireNonNull(requests);
+        
+        // RESOLVE ACCOUNTS: Cached IDs, one query for every account number not cached yet
+        Set<String> numbers = new HashSet<>();
+        for (TransferRequest r : requests) {
+            if (r == null) continue;
+            if (r.getFrom() != null) numbers.add(r.getFrom());
+            if (r.getTo() != null) numbers.add(r.getTo());
+        }
+        long start = System.nanoTime();
+        Map<String, Long> idsByNumber = numbers.isEmpty() ? Map.of() : idResolver.resolveAll(numbers);
+        metrics.record(TransferMetrics.Phase.RESOLVE, start);
+        if (ledgerMode) {
+            return transferBatchLedger(requests, idsByNumber);
+        }
+        
+        // ANTI-DEADLOCK STRATEGY: Every account row of the batch once, in ascending ID order,
+        // then the shards of split accounts (split accounts that are only credited keep
+        // their row unlocked), like splitTransfer
+        Set<Long> debited = new HashSet<>();
+        Set<Long> credited = new HashSet<>();
+        for (TransferRequest r : requests) {
+            if (r == null) {
+                continue;
+            }
+            Long fromId = r.getFrom() == null ? null : idsByNumber.get(r.getFrom());
+            Long toId = r.getTo() == null ? null : idsByNumber.get(r.getTo());
+            if (fromId != null && toId != null) {
+                debited.add(fromId);
+                credited.add(toId);
+            }
+        }
+        List<Long> ids = new ArrayList<>();
+        for (Long id : new TreeSet<>(idsByNumber.values())) {
+            if (debited.contains(id) || !splitBalance.isSplit(id)) {
+                ids.add(id);
+            }
+        }
+        start = System.nanoTime();
+        Map<Long, Account> locked = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (Account a : lockTimeouts.lock(() -> accountRepo.lockByIds(ids))) {
+                locked.put(a.getId(), a);
+            }
+        }
+        Map<Long, List<AccountBalanceShard>> shards = splitBalance.lockShards(debited, credited);
+        metrics.record(TransferMetrics.Phase.LOCK, start);
+        
+        // APPLY IN MEMORY: Items are processed in order, so a credit earlier in the
+        // batch can fund a debit later in the batch
+        start = System.nanoTime();
+        List<TransferResult> results = new ArrayList<>(requests.size());
+        List<Transaction> txs = new ArrayList<>();
+        List<AuditLog> audits = new ArrayList<>();
+        List<Integer> okIndexes = new ArrayList<>();
+        for (TransferRequest r : requests) {
+            BigDecimal amount = r == null ? null : r.getAmount();
+            if (amount == null || r.getFrom() == null || r.getTo() == null || amount.signum() <= 0) {
+                results.add(TransferResult.fail(TransferResult.Status.ERROR, "invalid request"));
+                continue;
+            }
+            if (r.getFrom().equals(r.getTo())) {
+                results.add(TransferResult.fail(TransferResult.Status.ERROR, "source and destination are the same account"));
+                continue;
+            }
+            Long fromId = idsByNumber.get(r.getFrom());
+            Long toId = idsByNumber.get(r.getTo());
+            Account from = locked.get(fromId);
+            Account to = locked.get(toId);
+            if (from == null || (to == null && !shards.containsKey(toId))) {
+                String missing = from == null ? r.getFrom() : r.getTo();
+                idResolver.invalidate(missing);
+                results.add(TransferResult.fail(TransferResult.Status.ERROR, "account not found: " + missing));
+                continue;
+            }
+            // Exact total of a split source: its row plus its locked shards
+            List<AccountBalanceShard> fromShards = shards.getOrDefault(fromId, List.of());
+            BigDecimal fromBalance = splitBalance.totalBalance(from, fromShards);
+            if (fromBalance.compareTo(amount) < 0) {
+                audits.add(new AuditLog("TRANSFER_FAILED",
+                        "from=" + r.getFrom() + " to=" + r.getTo() + " amount=" + amount + " reason=insufficient_funds"));
+                results.add(TransferResult.fail(TransferResult.Status.INSUFFICIENT_FUNDS, "insufficient funds"));
+                continue;
+            }
+            
+            splitBalance.debit(from, fromShards, amount);
+            BigDecimal toBalance = null;
+            if (to != null) {
+                to.setBalance(to.getBalance().add(amount));
+                toBalance = splitBalance.totalBalance(to, shards.getOrDefault(toId, List.of()));
+            } else {
+                // Split account only credited in this batch: its balance is not read
+                splitBalance.credit(shards.get(toId), amount);
+            }
+            txs.add(new Transaction(r.getFrom(), r.getTo(), amount, "COMPLETED"));
+            audits.add(new AuditLog("TRANSFER_OK",
+                    "from=" + r.getFrom() + " to=" + r.getTo() + " amount=" + amount));
+            // Balances are captured now, so each item reports the state right after it was applied
+            results.add(TransferResult.ok(null, fromBalance.subtract(amount), toBalance));
+            okIndexes.add(results.size() - 1);
+        }
+        
+        metrics.record(TransferMetrics.Phase.VALIDATE, start);
+        
+        // PERSIST: Dirty accounts are flushed once at commit, audit records are batched
+        start = System.nanoTime();
+        txRepo.saveAll(txs);
+        auditWriter.writeAll(audits);
+        for (Transaction tx : txs) {
+            outbox.transferCompleted(tx.getId(), tx.getFromAccount(), tx.getToAccount(), tx.getAmount(), tx.getTimestamp());
+        }
+        metrics.record(TransferMetrics.Phase.INSERT, start);
+        
+        for (int i = 0; i < okIndexes.size(); i++) {
+            int idx = okIndexes.get(i);
+            TransferResult applied = results.get(idx);
+            results.set(idx, TransferResult.ok(txs.get(i).getId(), applied.getFromBalance(), applied.getToBalance()));
+        }
+        return results;
+    }
+    
+    /**
+     * Moves money from one account to many, atomically: either every leg commits or none
+     * The source is locked and debited once for the total; all rows are locked with one
+     * ordered lockByIds call (advisory locks in ledger mode), and the Transaction rows,
+     * audit records and outbox events of the legs are written as JDBC batches.
+     * Returns one result per leg, in input order: all OK, or all carrying the same failure.
+     * A split source is checked and debited with its shards (SplitBalanceService), and
+     * legs to split accounts credit one of their shards; in ledger mode the entries of
+     * all legs are appended with one batch.
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<TransferResult> splitTransfer(String fromAccountNum, List<Leg> legs) {
+        Objects.requireNonNull(fromAccountNum);
+        Objects.requireNonNull(legs);
+        if (legs.isEmpty()) {
+            throw new IllegalArgumentException("at least one leg is required");
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        Set<String> numbers = new HashSet<>();
+        numbers.add(fromAccountNum);
+        for (Leg leg : legs) {
+            if (leg == null || leg.getTo() == null || leg.getAmount() == null || leg.getAmount().signum() <= 0) {
+                throw new IllegalArgumentException("every leg needs a destination and a positive amount");
             }
+            if (leg.getTo().equals(fromAccountNum)) {
+                throw new IllegalArgumentException("source and destination are the same account");
+            }
+            total = total.add(leg.getAmount());
+            numbers.add(leg.getTo());
+        }
+        
+        // RESOLVE ACCOUNTS: Cached IDs, one query for the misses
+        long start = System.nanoTime();
+        Map<String, Long> idsByNumber = idResolver.resolveAll(numbers);
+        metrics.record(TransferMetrics.Phase.RESOLVE, start);
+        for (String number : numbers) {
+            if (!idsByNumber.containsKey(number)) {
+                return failAll(legs.size(), TransferResult.fail(TransferResult.Status.ERROR, "account not found: " + number));
+            }
+        }
+        Long fromId = idsByNumber.get(fromAccountNum);
+        
+        // ANTI-DEADLOCK STRATEGY: Every account of the split once, in ascending ID order,
+        // then the shards of split accounts (credited split accounts keep their row unlocked)
+        start = System.nanoTime();
+        Set<Long> credited = new HashSet<>(idsByNumber.values());
+        credited.remove(fromId);
+        Map<Long, Account> locked = new HashMap<>();
+        Map<Long, List<AccountBalanceShard>> shards = Map.of();
+        List<Long> rowIds = new ArrayList<>();
+        LedgerService.Batch batch = null;
+        if (ledgerMode) {
+            ledger.lockAll(List.of(fromId), credited);
+            batch = ledger.batch(idsByNumber.values());
+        } else {
+            for (Long id : new TreeSet<>(idsByNumber.values())) {
+                if (id.equals(fromId) || !splitBalance.isSplit(id)) {
+                    rowIds.add(id);
+                }
+            }
+            for (Account a : lockTimeouts.lock(() -> accountRepo.lockByIds(rowIds))) {
+                locked.put(a.getId(), a);
+            }
+            if (locked.size() == rowIds.size()) {
+                shards = splitBalance.lockShards(fromId, credited);
+            }
+        }
+        metrics.record(TransferMetrics.Phase.LOCK, start);
+        
+        // BALANCE VALIDATION: The source must cover the sum of the legs
+        start = System.nanoTime();
+        BigDecimal fromBalance;
+        if (ledgerMode) {
+            fromBalance = null;
+            if (idsByNumber.values().stream().allMatch(batch::exists)) {
+                fromBalance = batch.balance(fromId);
+            }
+        } else {
+            fromBalance = locked.size() == rowIds.size()
+                    ? splitBalance.totalBalance(locked.get(fromId), shards.getOrDefault(fromId, List.of()))
+                    : null;
+        }
+        if (fromBalance == null) {
+            numbers.forEach(idResolver::invalidate);
+            return failAll(legs.size(), TransferResult.fail(TransferResult.Status.ERROR, "account not found"));
+        }
+        if (fromBalance.compareTo(total) < 0) {
+            auditWriter.write(new AuditLog("TRANSFER_FAILED",
+                    "from=" + fromAccountNum + " legs=" + legs.size() + " amount=" + total + " reason=insufficient_funds"));
+            metrics.record(TransferMetrics.Phase.VALIDATE, start);
+            return failAll(legs.size(), TransferResult.fail(TransferResult.Status.INSUFFICIENT_FUNDS, "insufficient funds"));
+        }
+        
+        // MOVE MONEY: One debit of the total, one credit per leg
+        List<Transaction> txs = new ArrayList<>(legs.size());
+        List<AuditLog> audits = new ArrayList<>(legs.size());
+        List<BigDecimal> fromBalances = new ArrayList<>(legs.size());
+        List<BigDecimal> toBalances = new ArrayList<>(legs.size());
+        BigDecimal remaining = fromBalance;
+        if (!ledgerMode) {
+            splitBalance.debit(locked.get(fromId), shards.getOrDefault(fromId, List.of()), total);
+        }
+        for (Leg leg : legs) {
+            Long toId = idsByNumber.get(leg.getTo());
+            remaining = remaining.subtract(leg.getAmount());
+            if (ledgerMode) {
+                batch.add(fromId, toId, leg.getAmount());
+                toBalances.add(null);
+            } else if (shards.containsKey(toId)) {
+                // Split account: its balance is not read
+                splitBalance.credit(shards.get(toId), leg.getAmount());
+                toBalances.add(null);
+            } else {
+                Account to = locked.get(toId);
+                to.setBalance(to.getBalance().add(leg.getAmount()));
+                toBalances.add(to.getBalance());
+            }
+            fromBalances.add(remaining);
+            txs.add(new Transaction(fromAccountNum, leg.getTo(), leg.getAmount(), "COMPLETED"));
+            audits.add(new AuditLog("TRANSFER_OK", "from=" + fromAccountNum + " to=" + leg.getTo() +
+                    " amount=" + leg.getAmount() + " legs=" + legs.size()));
+        }
+        metrics.record(TransferMetrics.Phase.VALIDATE, start);
+        
+        // PERSIST: Batched inserts; the dirty account rows are flushed once at commit
+        start = System.nanoTime();
+        if (batch != null) {
+            batch.flush();
+        }
+        txRepo.saveAll(txs);
+        auditWriter.writeAll(audits);
+        for (Transaction tx : txs) {
+            outbox.transferCompleted(tx.getId(), tx.getFromAccount(), tx.getToAccount(), tx.getAmount(), tx.getTimestamp());
+        }
+        metrics.record(TransferMetrics.Phase.INSERT, start);
+        
+        List<TransferResult> results = new ArrayList<>(legs.size());
+        for (int i = 0; i < txs.size(); i++) {
+            results.add(TransferResult.ok(txs.get(i).getId(), fromBalances.get(i), toBalances.get(i)));
+        }
+        return results;
+    }
+    
+    private static List<TransferResult> failAll(int size, TransferResult failure) {
+        return new ArrayList<>(Collections.nCopies(size, failure));
+    }
+    
+    /**
+     * transferBatch in ledger mode: the advisory locks of the whole batch are taken
+     * up front in ascending ID order (exclusive for every debited account), then each
+     * item is applied in order under them (LedgerTransferStrategy.applyLocked), so
+     * earlier credits still fund later debits; the entries go out as one batch
+     */
+    private List<TransferResult> transferBatchLedger(List<TransferRequest> requests, Map<String, Long> idsByNumber) {
+        Set<Long> debited = new HashSet<>();
+        Set<Long> credited = new HashSet<>();
+        for (TransferRequest r : requests) {
+            if (r == null) {
+                continue;
+            }
+            Long fromId = r.getFrom() == null ? null : idsByNumber.get(r.getFrom());
+            Long toId = r.getTo() == null ? null : idsByNumber.get(r.getTo());
+            if (fromId != null && toId != null) {
+                debited.add(fromId);
+                credited.add(toId);
+            }
+        }
+        long start = System.nanoTime();
+        ledger.lockAll(debited, credited);
+        metrics.record(TransferMetrics.Phase.LOCK, start);
+        
+        // APPLY: Under the batch's locks, one existence query, one balance read per
+        // debited account and one batched append for the whole batch
+        Set<Long> involved = new HashSet<>(debited);
+        involved.addAll(credited);
+        LedgerService.Batch batch = ledger.batch(involved);
+        LedgerTransferStrategy ledgerStrategy = (LedgerTransferStrategy) strategy;
+        List<TransferResult> results = new ArrayList<>(requests.size());
+        List<Transaction> txs = new ArrayList<>();
+        List<AuditLog> audits = new ArrayList<>();
+        List<Integer> okIndexes = new ArrayList<>();
+        for (TransferRequest r : requests) {
+            BigDecimal amount = r == null ? null : r.getAmount();
+            if (amount == null || r.getFrom() == null || r.getTo() == null || amount.signum() <= 0) {
+                results.add(TransferResult.fail(TransferResult.Status.ERROR, "invalid request"));
+                continue;
+            }
+            if (r.getFrom().equals(r.getTo())) {
+                results.add(TransferResult.fail(TransferResult.Status.ERROR, "source and destination are the same account"));
+                continue;
+            }
+            Long fromId = idsByNumber.get(r.getFrom());
+            Long toId = idsByNumber.get(r.getTo());
+            TransferResult applied = fromId == null || toId == null
+                    ? TransferResult.fail(TransferResult.Status.ERROR, "account not found")
+                    : ledgerStrategy.applyLocked(fromId, toId, amount, batch);
+            if (applied.getStatus() == TransferResult.Status.ERROR) {
+                idResolver.invalidate(r.getFrom());
+                idResolver.invalidate(r.getTo());
+                results.add(applied);
+                continue;
+            }
+            if (applied.getStatus() != TransferResult.Status.OK) {
+                audits.add(new AuditLog("TRANSFER_FAILED",
+                        "from=" + r.getFrom() + " to=" + r.getTo() + " amount=" + amount + " reason=insufficient_funds"));
+                results.add(applied);
+                continue;
+            }
+            txs.add(new Transaction(r.getFrom(), r.getTo(), amount, "COMPLETED"));
+            audits.add(new AuditLog("TRANSFER_OK",
+                    "from=" + r.getFrom() + " to=" + r.getTo() + " amount=" + amount + " strategy=" + strategy.name()));
+            results.add(applied);
+            okIndexes.add(results.size() - 1);
+        }
+        
+        start = System.nanoTime();
+        batch.flush();
+        txRepo.saveAll(txs);
+        auditWriter.writeAll(audits);
+        for (Transaction tx : txs) {
+            outbox.transferCompleted(tx.getId(), tx.getFromAccount(), tx.getToAccount(), tx.getAmount(), tx.getTimestamp());
+        }
+        metrics.record(TransferMetrics.Phase.INSERT, start);
+        
+        for (int i = 0; i < okIndexes.size(); i++) {
+            int idx = okIndexes.get(i);
+            TransferResult applied = results.get(idx);
+            results.set(idx, TransferResult.ok(txs.get(i).getId(), applied.getFromBalance(), applied.getToBalance()));
         }
+        return results;
     }
 }
@@ -0,0 +1,26 @@
+package com.example.bank.service;
+
+import com.example.bank.model.TransferResult;
+
+import java.math.BigDecimal;
+
+/**
+ * How a transfer moves money between two (already resolved) accounts
+ * The strategy only debits and credits balances; validation, the Transaction row
+ * and the audit log are handled by TransferService. Selected per deployment with
+ * the bank.transfer.strategy property (see {@link #name()}).
+ */
+public interface TransferStrategy {
+    
+    /**
+     * Value of bank.transfer.strategy that selects this strategy
+     */
+    String name();
+    
+    /**
+     * Debit fromId and credit toId inside the caller's transaction
+     * Returns TransferResult.ok(null, fromBalance, toBalance) with the new balances,
+     * or a failed result (INSUFFICIENT_FUNDS, ERROR) leaving both balances untouched
+     */
+    TransferResult apply(Long fromId, Long toId, BigDecimal amount);
+}
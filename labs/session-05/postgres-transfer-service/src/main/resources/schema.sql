@@ -1 +1,152 @@
-CREATE SCHEMA IF NOT EXISTS bank;
\ No newline at end of file
+CREATE SCHEMA IF NOT EXISTS bank;
+
+-- Pooled sequences (allocationSize = 50 in the entities): Hibernate reserves 50 ids
+-- per nextval and can batch inserts, which IDENTITY columns prevent
+CREATE SEQUENCE IF NOT EXISTS bank.account_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS bank.tx_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS bank.audit_log_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS bank.account_balance_shard_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS bank.account (
+    id             BIGINT PRIMARY KEY,
+    account_number VARCHAR(255) NOT NULL,
+    balance        NUMERIC(19, 2) NOT NULL,
+    version        BIGINT NOT NULL,
+    CONSTRAINT uq_account_number UNIQUE (account_number)
+);
+-- Balance at creation, the starting point of reconciliation; NULL for accounts created
+-- before the column existed (reported as unverified)
+ALTER TABLE bank.account ADD COLUMN IF NOT EXISTS opening_balance NUMERIC(19, 2);
+
+-- Split balance mode: part of a hot account's balance, one row per (account, shard).
+-- Shards are created with INSERT ... SELECT, hence the column default
+CREATE TABLE IF NOT EXISTS bank.account_balance_shard (
+    id         BIGINT PRIMARY KEY DEFAULT nextval('bank.account_balance_shard_seq'),
+    account_id BIGINT NOT NULL,
+    shard      INTEGER NOT NULL,
+    balance    NUMERIC(19, 2) NOT NULL,
+    CONSTRAINT uq_account_shard UNIQUE (account_id, shard)
+);
+
+-- Append-only tables, range partitioned by month on timestamp: old months are detached
+-- or dropped instead of DELETEd, and time-bounded queries only scan their months.
+-- The monthly partitions are created (and pre-existing plain tables converted) by
+-- PartitionMaintenanceService; the primary key has to include the partition key.
+CREATE TABLE IF NOT EXISTS bank.tx (
+    id           BIGINT NOT NULL,
+    from_account VARCHAR(255) NOT NULL,
+    to_account   VARCHAR(255) NOT NULL,
+    amount       NUMERIC(19, 2) NOT NULL,
+    timestamp    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    status       VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE IF NOT EXISTS bank.audit_log (
+    id        BIGINT NOT NULL,
+    action    VARCHAR(255) NOT NULL,
+    details   VARCHAR(1000) NOT NULL,
+    timestamp TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+-- Keyset pagination of an account's history by (timestamp, id); created on the parent,
+-- so every monthly partition gets its own copy
+CREATE INDEX IF NOT EXISTS ix_tx_from_account ON bank.tx (from_account, timestamp, id);
+CREATE INDEX IF NOT EXISTS ix_tx_to_account ON bank.tx (to_account, timestamp, id);
+
+-- Retention of bank.tx: per-account net amount (credits - debits) of the partitions
+-- removed by retention, rolled up before each detach so reconciliation still adds up.
+-- A partition is listed in tx_archived_partition in the same transaction as its
+-- amounts are added, and reconciliation skips the rows of listed partitions.
+CREATE TABLE IF NOT EXISTS bank.tx_archived_net (
+    account_number VARCHAR(255) PRIMARY KEY,
+    amount         NUMERIC(19, 2) NOT NULL
+);
+CREATE TABLE IF NOT EXISTS bank.tx_archived_partition (
+    partition_name VARCHAR(255) PRIMARY KEY,
+    archived_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+-- Idempotency-Key results, written in the same transaction as the transfer
+CREATE TABLE IF NOT EXISTS bank.idempotency_key (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    request_hash    VARCHAR(255) NOT NULL,
+    status          VARCHAR(255) NOT NULL,
+    message         VARCHAR(255),
+    tx_id           BIGINT,
+    from_balance    NUMERIC(19, 2),
+    to_balance      NUMERIC(19, 2),
+    created_at      TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+CREATE INDEX IF NOT EXISTS ix_idempotency_key_created_at ON bank.idempotency_key (created_at);
+
+-- Transactional outbox: events written with the transfer, published by OutboxRelay
+CREATE TABLE IF NOT EXISTS bank.outbox (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    event_type   VARCHAR(255) NOT NULL,
+    aggregate_id BIGINT NOT NULL,
+    payload      JSONB NOT NULL,
+    created_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now(),
+    processed_at TIMESTAMP(6) WITH TIME ZONE
+);
+-- Only pending rows: the relay's claim query stays small however many rows were processed
+CREATE INDEX IF NOT EXISTS ix_outbox_pending ON bank.outbox (id) WHERE processed_at IS NULL;
+
+-- Ledger mode (bank.transfer.strategy=ledger): a transfer appends a debit and a credit
+-- entry instead of updating bank.account. An account's balance is account.balance plus
+-- its shards plus the sum of its entries; ledger_snapshot holds that sum up to
+-- last_entry_id, so a balance read only adds the few entries after it. The identity
+-- keeps the default CACHE 1: entry ids then follow allocation order across sessions.
+CREATE SEQUENCE IF NOT EXISTS bank.ledger_transfer_seq;
+CREATE TABLE IF NOT EXISTS bank.ledger_entry (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    transfer_id BIGINT NOT NULL,
+    account_id  BIGINT NOT NULL,
+    amount      NUMERIC(19, 2) NOT NULL,
+    created_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now()
+);
+-- Entries of an account after its snapshot, summed with an index-only scan
+CREATE INDEX IF NOT EXISTS ix_ledger_entry_account ON bank.ledger_entry (account_id, id) INCLUDE (amount);
+
+CREATE TABLE IF NOT EXISTS bank.ledger_snapshot (
+    account_id    BIGINT PRIMARY KEY,
+    ledger_sum    NUMERIC(19, 2) NOT NULL,
+    last_entry_id BIGINT NOT NULL,
+    taken_at      TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+-- Future-dated and recurring transfers, claimed by ScheduledTransferService with
+-- FOR UPDATE SKIP LOCKED; recurrence is an ISO-8601 period (P1D, P1W, P1M...) and
+-- occurrence n is due at first_due_at + n * recurrence
+CREATE TABLE IF NOT EXISTS bank.scheduled_transfer (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    from_account VARCHAR(255) NOT NULL,
+    to_account   VARCHAR(255) NOT NULL,
+    amount       NUMERIC(19, 2) NOT NULL,
+    first_due_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    due_at       TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    recurrence   VARCHAR(32),
+    occurrence   INTEGER NOT NULL DEFAULT 0,
+    status       VARCHAR(32) NOT NULL,
+    last_status  VARCHAR(32),
+    last_message VARCHAR(255),
+    last_tx_id   BIGINT,
+    created_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now(),
+    updated_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now()
+);
+-- Only pending rows, in due order: the claim query reads the front of this index
+CREATE INDEX IF NOT EXISTS ix_scheduled_transfer_due ON bank.scheduled_transfer (due_at) WHERE status = 'PENDING';
+
+-- Migration from IDENTITY ids: drop the identity and move each sequence past the
+-- existing ids (never backwards, other instances may hold a reserved block)
+ALTER TABLE bank.account ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE bank.tx ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE bank.audit_log ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE bank.account_balance_shard ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE bank.account_balance_shard ALTER COLUMN id SET DEFAULT nextval('bank.account_balance_shard_seq');
+
+SELECT setval('bank.account_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM bank.account) + 50, (SELECT last_value FROM bank.account_seq)));
+SELECT setval('bank.tx_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM bank.tx) + 50, (SELECT last_value FROM bank.tx_seq)));
+SELECT setval('bank.audit_log_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM bank.audit_log) + 50, (SELECT last_value FROM bank.audit_log_seq)));
+SELECT setval('bank.account_balance_shard_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM bank.account_balance_shard) + 50, (SELECT last_value FROM bank.account_balance_shard_seq)));
@@ -0,0 +1,186 @@
+package com.example.bank.config;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlStatementBudgetTest {
+
+    private final SqlStatementBudget budget = new SqlStatementBudget(true, List.of("/api/transfer=8", " /api/transfers/batch = 2 "));
+    private final DataSource dataSource = (DataSource) budget.postProcessAfterInitialization(stubDataSource(), "dataSource");
+
+    @Test
+    void limitsAreParsedPerEndpoint() {
+        request("POST", "/api/transfer", conn -> { });
+        request("POST", "/api/transfers/batch", conn -> { });
+        request("GET", "/api/accounts/{accountNumber}", conn -> { });
+
+        assertEquals(8, endpoint("POST /api/transfer").get("budget"));
+        assertEquals(2, endpoint("POST /api/transfers/batch").get("budget"));
+        assertNull(endpoint("GET /api/accounts/{accountNumber}").get("budget"));
+    }
+
+    @Test
+    void invalidLimitIsRefused() {
+        assertThrows(IllegalArgumentException.class, () -> new SqlStatementBudget(true, List.of("/api/transfer")));
+        assertThrows(NumberFormatException.class, () -> new SqlStatementBudget(true, List.of("/api/transfer=eight")));
+    }
+
+    @Test
+    void requestWithinItsBudgetIsNotOverBudget() {
+        request("POST", "/api/transfer", conn -> execute(conn, 8));
+
+        Map<String, Object> stats = endpoint("POST /api/transfer");
+        assertEquals(0L, stats.get("overBudget"));
+        assertEquals(8.0, statements(stats).get("max"));
+    }
+
+    @Test
+    void requestOverItsBudgetIsCounted() {
+        request("POST", "/api/transfer", conn -> execute(conn, 9));
+        request("POST", "/api/transfer", conn -> execute(conn, 3));
+
+        Map<String, Object> stats = endpoint("POST /api/transfer");
+        assertEquals(1L, stats.get("overBudget"));
+        assertEquals(2L, statements(stats).get("count"));
+        assertEquals(9.0, statements(stats).get("max"));
+    }
+
+    @Test
+    void batchIsOneStatementAndCommitIsNot() {
+        request("POST", "/api/transfers/batch", conn -> {
+            try (Statement st = conn.createStatement()) {
+                st.addBatch("INSERT INTO t VALUES (1)");
+                st.addBatch("INSERT INTO t VALUES (2)");
+                st.executeBatch();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE t SET x = 1")) {
+                ps.executeUpdate();
+            }
+            conn.commit();
+        });
+
+        Map<String, Object> stats = endpoint("POST /api/transfers/batch");
+        assertEquals(2.0, statements(stats).get("max"));
+        assertEquals(0L, stats.get("overBudget"));
+    }
+
+    @Test
+    void workOffRequestThreadsIsNotAttributed() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            execute(conn, 20);
+        }
+        request("POST", "/api/transfer", conn -> execute(conn, 1));
+
+        assertEquals(1.0, statements(endpoint("POST /api/transfer")).get("max"));
+    }
+
+    @Test
+    void resetStartsANewWindow() {
+        request("POST", "/api/transfer", conn -> execute(conn, 9));
+
+        assertEquals(1L, endpoint("POST /api/transfer", true).get("overBudget"));
+        Map<String, Object> after = endpoint("POST /api/transfer");
+        assertEquals(0L, after.get("overBudget"));
+        assertEquals(0L, statements(after).get("count"));
+    }
+
+    @Test
+    void disabledBudgetLeavesTheDataSourceAlone() {
+        DataSource plain = stubDataSource();
+        assertSame(plain, new SqlStatementBudget(false, List.of()).postProcessAfterInitialization(plain, "dataSource"));
+    }
+
+    private interface Work {
+        void run(Connection conn) throws SQLException;
+    }
+
+    private void request(String method, String pattern, Work work) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, pattern);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        FilterChain chain = (req, res) -> {
+            try (Connection conn = dataSource.getConnection()) {
+                work.run(conn);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        try {
+            budget.doFilter(request, new MockHttpServletResponse(), chain);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void execute(Connection conn, int statements) throws SQLException {
+        for (int i = 0; i < statements; i++) {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT 1")) {
+                ps.executeQuery();
+            }
+        }
+    }
+
+    private Map<String, Object> endpoint(String endpoint) {
+        return endpoint(endpoint, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> endpoint(String endpoint, boolean reset) {
+        Map<String, Object> endpoints = (Map<String, Object>) budget.snapshot(reset).get("endpoints");
+        return (Map<String, Object>) endpoints.get(endpoint);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> statements(Map<String, Object> stats) {
+        return (Map<String, Object>) stats.get("statements");
+    }
+
+    // JDBC stubs: statements do nothing, connections hand out statements
+    private static DataSource stubDataSource() {
+        return stub(DataSource.class, (proxy, method, args) ->
+                method.getName().equals("getConnection") ? stubConnection() : defaultValue(method.getReturnType()));
+    }
+
+    private static Connection stubConnection() {
+        return stub(Connection.class, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("prepare") || name.equals("createStatement")) {
+                return stub(PreparedStatement.class, (p, m, a) ->
+                        m.getName().equals("executeBatch") ? new int[0] : defaultValue(m.getReturnType()));
+            }
+            return defaultValue(method.getReturnType());
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.bank.service;
+
+import com.example.bank.model.TransferResult;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+
+    private static final TransferResult OK = TransferResult.ok(42L, new BigDecimal("90.00"), new BigDecimal("60.00"));
+
+    @Test
+    void entryExpiresAfterTheTtl() throws InterruptedException {
+        IdempotencyCache cache = new IdempotencyCache(10, 20, 1);
+        cache.put("k", "A-001|A-002|10", OK);
+        assertSame(OK, cache.get("k").getResult());
+
+        Thread.sleep(60);
+
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void oldestEntryIsEvictedAtCapacity() {
+        IdempotencyCache cache = new IdempotencyCache(4, 60_000, 1);
+        for (int i = 0; i < 5; i++) {
+            cache.put("k" + i, "hash" + i, OK);
+        }
+
+        assertEquals(4, cache.size());
+        assertNull(cache.get("k0"));
+        for (int i = 1; i < 5; i++) {
+            assertEquals("hash" + i, cache.get("k" + i).getRequestHash());
+        }
+    }
+
+    @Test
+    void everyStripeIsBounded() {
+        IdempotencyCache cache = new IdempotencyCache(64, 60_000, 4);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("key-" + i, "hash", OK);
+        }
+
+        assertTrue(cache.size() <= 64, "size " + cache.size());
+        assertNotNull(cache.get("key-9999"));
+    }
+
+    @Test
+    void sameKeyForADifferentRequestIsRefused() {
+        IdempotencyService idempotency = new IdempotencyService(null, null, 10, 60_000, 1, 24);
+        String first = IdempotencyService.fingerprint("A-001", "A-002", new BigDecimal("10.00"));
+        idempotency.remember("k", first, OK);
+
+        // Same request, amount written differently: replayed
+        assertSame(OK, idempotency.cached("k", IdempotencyService.fingerprint("A-001", "A-002", new BigDecimal("10"))));
+
+        TransferResult other = idempotency.cached("k", IdempotencyService.fingerprint("A-001", "A-002", new BigDecimal("11.00")));
+        assertEquals(TransferResult.Status.ERROR, other.getStatus());
+        assertEquals("idempotency key already used for a different transfer", other.getMessage());
+        assertNull(other.getTxId());
+    }
+
+    @Test
+    void invalidConfigurationIsRefused() {
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(0, 1_000, 1));
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(10, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyCache(10, 1_000, 0));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.bank.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    // 16 linear sub-buckets per power of two: a bucket is at most 1/16 of its lower bound wide
+    private static final double RELATIVE_ERROR = 1.0 / 16;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    void everyValueFallsInABucketThatCoversIt() {
+        for (long v = 0; v < 100_000; v++) {
+            assertCovered(v);
+        }
+        for (long v = 100_000; v > 0 && v < Long.MAX_VALUE / 3; v = v * 3 + 1) {
+            assertCovered(v);
+        }
+        assertCovered(Long.MAX_VALUE);
+    }
+
+    @Test
+    void percentilesAreWithinTheBucketError() {
+        for (long v = 1; v <= 10_000; v++) {
+            histogram.record(v);
+        }
+
+        Map<String, Object> s = histogram.snapshot(false, 1.0);
+        assertEquals(10_000L, s.get("count"));
+        assertEquals(5_000.5, (double) s.get("mean"), 1e-9);
+        assertWithin(5_000, (double) s.get("p50"));
+        assertWithin(9_000, (double) s.get("p90"));
+        assertWithin(9_900, (double) s.get("p99"));
+        assertWithin(9_990, (double) s.get("p999"));
+        assertEquals(10_000.0, s.get("max"));
+    }
+
+    @Test
+    void smallValuesAreExactAndScaleIsApplied() {
+        histogram.record(0);
+        histogram.record(3);
+        histogram.record(31);
+
+        Map<String, Object> s = histogram.snapshot(false, 1_000.0);
+        assertEquals(3L, s.get("count"));
+        assertEquals(0.003, (double) s.get("p50"), 1e-12);
+        assertEquals(0.031, (double) s.get("p99"), 1e-12);
+        assertEquals(0.031, (double) s.get("max"), 1e-12);
+    }
+
+    @Test
+    void negativeValuesAreRecordedAsZero() {
+        histogram.record(-5);
+        histogram.record(Long.MIN_VALUE);
+
+        Map<String, Object> s = histogram.snapshot(false, 1.0);
+        assertEquals(2L, s.get("count"));
+        assertEquals(0.0, s.get("p99"));
+        assertEquals(0.0, s.get("max"));
+        assertEquals(0.0, s.get("mean"));
+    }
+
+    @Test
+    void veryLargeValueIsCappedAtTheRecordedMax() {
+        histogram.record(Long.MAX_VALUE);
+
+        Map<String, Object> s = histogram.snapshot(false, 1.0);
+        assertEquals((double) Long.MAX_VALUE, s.get("p50"));
+        assertEquals((double) Long.MAX_VALUE, s.get("max"));
+    }
+
+    @Test
+    void resetStartsANewWindow() {
+        histogram.record(1_000);
+        histogram.record(2_000);
+
+        assertEquals(2L, histogram.snapshot(true, 1.0).get("count"));
+        Map<String, Object> empty = histogram.snapshot(false, 1.0);
+        assertEquals(0L, empty.get("count"));
+        assertEquals(0.0, empty.get("p99"));
+        assertEquals(0.0, empty.get("max"));
+        assertEquals(0.0, empty.get("mean"));
+
+        histogram.record(7);
+        Map<String, Object> next = histogram.snapshot(false, 1.0);
+        assertEquals(1L, next.get("count"));
+        assertEquals(7.0, next.get("max"));
+    }
+
+    private static void assertCovered(long v) {
+        int index = LatencyHistogram.indexOf(v);
+        long highest = LatencyHistogram.highestValueOf(index);
+        assertTrue(highest >= v, "bucket of " + v + " ends at " + highest);
+        if (index > 0) {
+            assertTrue(LatencyHistogram.highestValueOf(index - 1) < v, "previous bucket also covers " + v);
+        }
+        assertTrue(highest - v <= v * RELATIVE_ERROR, "bucket of " + v + " is too wide");
+    }
+
+    private static void assertWithin(long expected, double reported) {
+        assertTrue(reported >= expected && reported <= expected * (1 + RELATIVE_ERROR),
+                "expected " + expected + " within " + RELATIVE_ERROR + ", got " + reported);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.bank.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduledTransferServiceTest {
+
+    private static final OffsetDateTime FIRST = OffsetDateTime.parse("2026-01-15T09:30:00Z");
+    private static final OffsetDateTime JAN_31 = OffsetDateTime.parse("2026-01-31T09:30:00Z");
+
+    @Test
+    void nextOccurrenceIsCountedFromTheFirstDueInstant() {
+        assertEquals(OffsetDateTime.parse("2026-01-16T09:30:00Z"), ScheduledTransferService.nextDueAt(FIRST, "P1D", 0));
+        assertEquals(OffsetDateTime.parse("2026-01-22T09:30:00Z"), ScheduledTransferService.nextDueAt(FIRST, "P1W", 0));
+        assertEquals(OffsetDateTime.parse("2026-04-15T09:30:00Z"), ScheduledTransferService.nextDueAt(FIRST, "P1M", 2));
+        assertEquals(OffsetDateTime.parse("2027-01-15T09:30:00Z"), ScheduledTransferService.nextDueAt(FIRST, "P1Y", 0));
+    }
+
+    @Test
+    void monthEndIsKeptAfterAShortMonth() {
+        assertEquals(OffsetDateTime.parse("2026-02-28T09:30:00Z"), ScheduledTransferService.nextDueAt(JAN_31, "P1M", 0));
+        assertEquals(OffsetDateTime.parse("2026-03-31T09:30:00Z"), ScheduledTransferService.nextDueAt(JAN_31, "P1M", 1));
+        assertEquals(OffsetDateTime.parse("2026-04-30T09:30:00Z"), ScheduledTransferService.nextDueAt(JAN_31, "P1M", 2));
+        assertEquals(OffsetDateTime.parse("2028-02-29T09:30:00Z"), ScheduledTransferService.nextDueAt(JAN_31, "P1M", 24));
+    }
+
+    @Test
+    void invalidRecurrenceIsRefused() {
+        assertThrows(IllegalArgumentException.class, () -> ScheduledTransferService.nextDueAt(FIRST, "monthly", 0));
+        assertThrows(IllegalArgumentException.class, () -> ScheduledTransferService.nextDueAt(FIRST, "P0D", 0));
+        assertThrows(IllegalArgumentException.class, () -> ScheduledTransferService.nextDueAt(FIRST, "P-1D", 0));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.bank.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    // 1s ticks, 60 buckets per level: level 0 covers a minute, level 1 an hour...
+    private final TimingWheel wheel = new TimingWheel(1000, 60, 0);
+
+    @Test
+    void instantExpiresOnceItsTickIsOver() {
+        assertTrue(wheel.add(5_500));
+
+        assertTrue(wheel.advance(5_999).isEmpty());
+        assertEquals(List.of(5_500L), wheel.advance(6_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void equalInstantsAreStoredOnce() {
+        wheel.add(7_000);
+        wheel.add(7_000);
+        wheel.add(7_400);
+
+        assertEquals(2, wheel.size());
+        List<Long> expired = wheel.advance(8_000);
+        assertEquals(2, expired.size());
+        assertTrue(expired.containsAll(List.of(7_000L, 7_400L)));
+    }
+
+    @Test
+    void instantOfAnElapsedTickIsRefused() {
+        wheel.advance(10_000);
+
+        assertFalse(wheel.add(9_999));
+        assertTrue(wheel.add(10_000));
+    }
+
+    @Test
+    void overflowInstantsCascadeAndNeverExpireEarly() {
+        long inTwoMinutes = 125_300;
+        long inOneHour = 3_600_500;
+        long inTwoDays = 172_800_000;
+        assertTrue(wheel.add(inTwoMinutes));
+        assertTrue(wheel.add(inOneHour));
+        assertTrue(wheel.add(inTwoDays));
+        assertEquals(3, wheel.size());
+
+        assertTrue(wheel.advance(inTwoMinutes).isEmpty());
+        assertEquals(List.of(inTwoMinutes), wheel.advance(126_000));
+        assertTrue(wheel.advance(3_600_999).isEmpty());
+        assertEquals(List.of(inOneHour), wheel.advance(3_601_000));
+        assertTrue(wheel.advance(inTwoDays).isEmpty());
+        assertEquals(List.of(inTwoDays), wheel.advance(inTwoDays + 1_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void largeJumpExpiresEverythingInBetween() {
+        List<Long> due = new ArrayList<>();
+        for (long t = 1_000; t < 7_200_000; t += 61_000) {
+            wheel.add(t);
+            due.add(t);
+        }
+
+        List<Long> expired = wheel.advance(7_200_000);
+        expired.sort(null);
+        assertEquals(due, expired);
+        assertEquals(0, wheel.size());
+    }
+}